@@ -0,0 +1,31 @@
+package io.quarkiverse.helm.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the JMH command line options, and always adds the GC profiler, so the allocation rate of
+ * every benchmark is reported next to its throughput.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+        boolean gcProfilerEnabled = commandLineOptions.getProfilers().stream()
+                .anyMatch(profiler -> GCProfiler.class.getName().equals(profiler.getKlass())
+                        || "gc".equals(profiler.getKlass()));
+        if (!gcProfilerEnabled) {
+            options.addProfiler(GCProfiler.class);
+        }
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,87 @@
+package io.quarkiverse.helm.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.dekorate.ConfigReference;
+import io.dekorate.project.Project;
+import io.quarkiverse.helm.deployment.HelmChartConfig;
+import io.quarkiverse.helm.deployment.QuarkusHelmWriterSessionListener;
+
+/**
+ * Whole generation of a Helm chart: value references, templates, Chart.yaml, values.yaml, the values schema and the
+ * README file. The output folder is deleted before every invocation, so every invocation writes the chart from
+ * scratch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ChartWriterBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    int resources;
+
+    @Param({ "10", "500", "5000" })
+    int values;
+
+    private Path workDir;
+    private Path inputDir;
+    private Path outputDir;
+    private Project project;
+    private HelmChartConfig config;
+    private List<ConfigReference> valueReferences;
+    private Map<String, byte[]> generatedFiles;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workDir = Files.createTempDirectory("helm-benchmark");
+        inputDir = Fixtures.inputDir(workDir);
+        outputDir = workDir.resolve("output");
+        project = Fixtures.project(workDir);
+        config = Fixtures.config(false);
+        valueReferences = Fixtures.valueReferences(resources, values);
+        generatedFiles = Collections.singletonMap(Fixtures.GENERATED_FILE,
+                Fixtures.resources(resources, values).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Setup(Level.Invocation)
+    public void cleanOutput() throws IOException {
+        Fixtures.delete(outputDir);
+        Files.createDirectories(outputDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Fixtures.delete(workDir);
+    }
+
+    @Benchmark
+    public Map<String, String> writeHelmFiles() {
+        return new QuarkusHelmWriterSessionListener().writeHelmFiles(Fixtures.CHART_NAME, project, config,
+                valueReferences, inputDir, outputDir, generatedFiles, Collections.emptyMap(), Collections.emptyMap(),
+                Collections.emptyList());
+    }
+}
@@ -0,0 +1,214 @@
+package io.quarkiverse.helm.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.dekorate.ConfigReference;
+import io.dekorate.project.BuildInfo;
+import io.dekorate.project.Project;
+import io.quarkiverse.helm.deployment.HelmChartConfig;
+import io.quarkiverse.helm.deployment.utils.ValuesHolder;
+import io.smallrye.config.SmallRyeConfig;
+import io.smallrye.config.SmallRyeConfigBuilder;
+import io.smallrye.config.common.MapBackedConfigSource;
+
+/**
+ * Synthetic inputs for the benchmarks. The resources cycle through the kinds that are usually generated by the
+ * Kubernetes extension, and every value reference points to a label of one of these resources, so the values are
+ * spread across all the resources.
+ */
+final class Fixtures {
+
+    static final String CHART_NAME = "benchmark";
+    static final String GENERATED_FILE = "kubernetes.yml";
+
+    private static final String[] KINDS = { "Deployment", "Service", "ConfigMap", "ServiceAccount", "Role" };
+    private static final int USER_EXPRESSIONS = 10;
+
+    private Fixtures() {
+
+    }
+
+    /**
+     * @return the content of a generated file with the given number of resources.
+     */
+    static String resources(int resources, int values) {
+        int labelsPerResource = labelsPerResource(resources, values);
+        StringBuilder yaml = new StringBuilder();
+        for (int index = 0; index < resources; index++) {
+            String kind = kind(index);
+            yaml.append("---\n")
+                    .append("apiVersion: ").append(apiVersion(kind)).append('\n')
+                    .append("kind: ").append(kind).append('\n')
+                    .append("metadata:\n")
+                    .append("  name: ").append(name(index)).append('\n')
+                    .append("  labels:\n");
+            for (int label = 0; label < labelsPerResource; label++) {
+                yaml.append("    label").append(label).append(": \"value-").append(label).append("\"\n");
+            }
+
+            switch (kind) {
+                case "Deployment":
+                    yaml.append("spec:\n")
+                            .append("  replicas: 1\n")
+                            .append("  template:\n")
+                            .append("    spec:\n")
+                            .append("      containers:\n")
+                            .append("        - name: ").append(name(index)).append('\n')
+                            .append("          image: quay.io/benchmark/").append(name(index)).append(":1.0\n")
+                            .append("          env:\n")
+                            .append("            - name: JAVA_OPTS\n")
+                            .append("              value: \"-Dquarkus.http.port=8080\"\n")
+                            .append("          ports:\n")
+                            .append("            - containerPort: 8080\n")
+                            .append("              name: http\n");
+                    break;
+                case "Service":
+                    yaml.append("spec:\n")
+                            .append("  ports:\n")
+                            .append("    - port: 80\n")
+                            .append("      targetPort: 8080\n");
+                    break;
+                case "ConfigMap":
+                    yaml.append("data:\n")
+                            .append("  application.properties: |\n")
+                            .append("    greeting.message=\"hello\"\n")
+                            .append("    greeting.name=benchmark\n");
+                    break;
+                case "Role":
+                    yaml.append("rules:\n")
+                            .append("  - apiGroups: [\"\"]\n")
+                            .append("    resources: [\"pods\"]\n")
+                            .append("    verbs: [\"get\", \"list\"]\n");
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return yaml.toString();
+    }
+
+    /**
+     * @return the value references as provided by the Kubernetes decorators.
+     */
+    static List<ConfigReference> valueReferences(int resources, int values) {
+        int labelsPerResource = labelsPerResource(resources, values);
+        List<ConfigReference> references = new ArrayList<>(values);
+        for (int index = 0; index < values; index++) {
+            int resource = index % resources;
+            int label = index / resources % labelsPerResource;
+            String path = String.format("(kind == %s && metadata.name == %s).metadata.labels.label%d",
+                    kind(resource), name(resource), label);
+            references.add(new ConfigReference.Builder(property(resource, label), new String[] { path })
+                    .withDescription("Label " + label + " of " + name(resource))
+                    .build());
+        }
+
+        return references;
+    }
+
+    /**
+     * @return the values of the chart, with the same properties that the value references would generate.
+     */
+    static Map<String, ValuesHolder.HelmValueHolder> prodValues(int resources, int values) {
+        Map<String, ValuesHolder.HelmValueHolder> prodValues = new HashMap<>();
+        for (ConfigReference reference : valueReferences(resources, values)) {
+            prodValues.put("app." + reference.getProperty(), new ValuesHolder.HelmValueHolder("value", reference));
+        }
+
+        return prodValues;
+    }
+
+    static HelmChartConfig config(boolean createTarFile) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("quarkus.helm.name", CHART_NAME);
+        properties.put("quarkus.helm.description", "Benchmark chart");
+        properties.put("quarkus.helm.create-tar-file", String.valueOf(createTarFile));
+        for (int index = 0; index < USER_EXPRESSIONS; index++) {
+            properties.put("quarkus.helm.expressions." + index + ".path",
+                    String.format("(kind == Deployment && metadata.name == %s).spec.replicas", name(index * KINDS.length)));
+            properties.put("quarkus.helm.expressions." + index + ".expression", "{{ .Values.app.replicas }}");
+        }
+
+        SmallRyeConfig config = new SmallRyeConfigBuilder()
+                .withMapping(HelmChartConfig.class)
+                .withSources(new MapBackedConfigSource("benchmarks", properties) {
+                })
+                .build();
+        return config.getConfigMapping(HelmChartConfig.class);
+    }
+
+    /**
+     * @return the input folder of the chart. It includes the notes template, so the notes are not loaded from the
+     *         Quarkus class loader.
+     */
+    static Path inputDir(Path workDir) throws IOException {
+        Path inputDir = Files.createDirectories(workDir.resolve("input"));
+        Files.writeString(inputDir.resolve("NOTES.txt"), "Thank you for installing {{ .Chart.Name }}.\n");
+        return inputDir;
+    }
+
+    static Project project(Path root) {
+        return new Project(root, new BuildInfo(CHART_NAME, "1.0.0", "jar", "maven", "3.9", null, null, null), null);
+    }
+
+    static List<File> listFiles(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).map(Path::toFile).collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void delete(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int labelsPerResource(int resources, int values) {
+        return Math.max(1, (values + resources - 1) / resources);
+    }
+
+    private static String property(int resource, int label) {
+        return "resource" + resource + ".label" + label;
+    }
+
+    private static String kind(int index) {
+        return KINDS[index % KINDS.length];
+    }
+
+    private static String name(int index) {
+        return "app-" + index;
+    }
+
+    private static String apiVersion(String kind) {
+        switch (kind) {
+            case "Deployment":
+                return "apps/v1";
+            case "Role":
+                return "rbac.authorization.k8s.io/v1";
+            default:
+                return "v1";
+        }
+    }
+}
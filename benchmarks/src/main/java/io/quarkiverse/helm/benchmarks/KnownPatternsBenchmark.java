@@ -0,0 +1,57 @@
+package io.quarkiverse.helm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.quarkiverse.helm.deployment.utils.KnownPatternsRewriter;
+
+/**
+ * Rewriting of the tokens that carry the Helm expressions through the YAML serialization of the templates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KnownPatternsBenchmark {
+
+    private static final String EXPRESSION = "\":START:{{ .Values.app.resource%d.label%d | quote }}:END:\"";
+
+    @Param({ "10", "100", "1000" })
+    int resources;
+
+    @Param({ "10", "500", "5000" })
+    int values;
+
+    private String content;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // the templates as serialized after replacing every label by its Helm expression
+        StringBuilder template = new StringBuilder(Fixtures.resources(resources, values));
+        for (int index = 0; index < values; index++) {
+            template.append("expression").append(index).append(": ")
+                    .append(String.format(EXPRESSION, index % resources, index / resources)).append('\n');
+        }
+
+        content = template.toString();
+    }
+
+    @Benchmark
+    public String rewrite() {
+        return KnownPatternsRewriter.rewrite(content);
+    }
+}
@@ -0,0 +1,85 @@
+package io.quarkiverse.helm.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.quarkiverse.helm.deployment.QuarkusHelmWriterSessionListener;
+import io.quarkiverse.helm.deployment.utils.HelmTarArchiver;
+
+/**
+ * Packaging of a generated chart into the Helm tarball. The number of compression threads is only used by the gzip
+ * tarballs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TarBallBenchmark {
+
+    private static final int VALUES = 500;
+
+    @Param({ "10", "100", "1000" })
+    int resources;
+
+    @Param({ "tar.gz", "tar" })
+    String extension;
+
+    @Param({ "1", "4" })
+    int compressionThreads;
+
+    private Path workDir;
+    private File chartDir;
+    private File tarball;
+    private List<File> files;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workDir = Files.createTempDirectory("helm-benchmark");
+        Path inputDir = Fixtures.inputDir(workDir);
+        Path outputDir = Files.createDirectories(workDir.resolve("output"));
+        new QuarkusHelmWriterSessionListener().writeHelmFiles(Fixtures.CHART_NAME, Fixtures.project(workDir),
+                Fixtures.config(false), Fixtures.valueReferences(resources, VALUES), inputDir, outputDir,
+                Collections.singletonMap(Fixtures.GENERATED_FILE,
+                        Fixtures.resources(resources, VALUES).getBytes(StandardCharsets.UTF_8)),
+                Collections.emptyMap(), Collections.emptyMap(), Collections.emptyList());
+
+        chartDir = outputDir.resolve(Fixtures.CHART_NAME).toFile();
+        files = Fixtures.listFiles(chartDir.toPath());
+        tarball = workDir.resolve("chart." + extension).toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Fixtures.delete(workDir);
+    }
+
+    @Benchmark
+    public File createTarBall() throws IOException {
+        return HelmTarArchiver.createTarBall(tarball, chartDir, files, extension, Deflater.DEFAULT_COMPRESSION,
+                compressionThreads,
+                entry -> entry.setName(Fixtures.CHART_NAME + "/" + entry.getName()));
+    }
+}
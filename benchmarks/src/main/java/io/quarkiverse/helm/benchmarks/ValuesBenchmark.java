@@ -0,0 +1,63 @@
+package io.quarkiverse.helm.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.quarkiverse.helm.deployment.HelmChartConfig;
+import io.quarkiverse.helm.deployment.utils.ValuesHolder;
+import io.quarkiverse.helm.deployment.utils.ValuesSchemaUtils;
+import io.quarkiverse.helm.deployment.utils.ValuesTree;
+import io.quarkiverse.helm.model.ValuesSchema;
+
+/**
+ * Conversion of the values into the tree of the `values.yaml` file and creation of the `values.schema.json` file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValuesBenchmark {
+
+    private static final int RESOURCES = 100;
+
+    @Param({ "10", "100", "1000", "5000" })
+    int values;
+
+    private HelmChartConfig config;
+    private Map<String, ValuesHolder.HelmValueHolder> valuesByProperty;
+    private ValuesTree prodValues;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        config = Fixtures.config(false);
+        valuesByProperty = Fixtures.prodValues(RESOURCES, values);
+        prodValues = ValuesTree.of(valuesByProperty);
+    }
+
+    @Benchmark
+    public Map<String, Object> valuesTree() {
+        ValuesTree tree = new ValuesTree();
+        valuesByProperty.forEach(tree::put);
+        return tree.toMap();
+    }
+
+    @Benchmark
+    public ValuesSchema createValuesSchema() {
+        return ValuesSchemaUtils.createValuesSchema(config, prodValues);
+    }
+}
@@ -0,0 +1,67 @@
+package io.quarkiverse.helm.deployment;
+
+import static io.quarkiverse.helm.deployment.utils.HelmConfigUtils.deductProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes the `add-if-statement` configurations by the kind and the name of the resources they apply to, so the if
+ * statements of a resource are found without checking every configuration.
+ */
+final class AddIfStatementIndex {
+
+    private final List<IfStatement> onAllResources = new ArrayList<>();
+    private final Map<String, List<IfStatement>> byKind = new HashMap<>();
+    private final Map<String, List<IfStatement>> byName = new HashMap<>();
+    private final Map<String, Map<String, List<IfStatement>>> byKindAndName = new HashMap<>();
+
+    AddIfStatementIndex(HelmChartConfig helmConfig) {
+        int order = 0;
+        for (Map.Entry<String, AddIfStatementConfig> addIfStatement : helmConfig.addIfStatement().entrySet()) {
+            AddIfStatementConfig config = addIfStatement.getValue();
+            IfStatement ifStatement = new IfStatement(order++,
+                    deductProperty(helmConfig, config.property().orElse(addIfStatement.getKey())));
+            if (config.onResourceKind().isPresent() && config.onResourceName().isPresent()) {
+                byKindAndName.computeIfAbsent(config.onResourceKind().get(), k -> new HashMap<>())
+                        .computeIfAbsent(config.onResourceName().get(), n -> new ArrayList<>())
+                        .add(ifStatement);
+            } else if (config.onResourceKind().isPresent()) {
+                byKind.computeIfAbsent(config.onResourceKind().get(), k -> new ArrayList<>()).add(ifStatement);
+            } else if (config.onResourceName().isPresent()) {
+                byName.computeIfAbsent(config.onResourceName().get(), n -> new ArrayList<>()).add(ifStatement);
+            } else {
+                onAllResources.add(ifStatement);
+            }
+        }
+    }
+
+    /**
+     * @return the properties of the if statements that apply to the resource, in the order they are configured.
+     */
+    List<String> getProperties(String kind, String resourceName) {
+        List<IfStatement> ifStatements = new ArrayList<>(onAllResources);
+        ifStatements.addAll(byKind.getOrDefault(kind, Collections.emptyList()));
+        ifStatements.addAll(byName.getOrDefault(resourceName, Collections.emptyList()));
+        ifStatements.addAll(byKindAndName.getOrDefault(kind, Collections.emptyMap())
+                .getOrDefault(resourceName, Collections.emptyList()));
+        if (ifStatements.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        ifStatements.sort(Comparator.comparingInt(IfStatement::order));
+        List<String> properties = new ArrayList<>(ifStatements.size());
+        for (IfStatement ifStatement : ifStatements) {
+            properties.add(ifStatement.property());
+        }
+
+        return properties;
+    }
+
+    private record IfStatement(int order, String property) {
+    }
+}
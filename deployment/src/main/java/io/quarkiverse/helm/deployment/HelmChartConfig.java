@@ -106,6 +106,33 @@ public interface HelmChartConfig {
      */
     Optional<String> type();
 
+    /**
+     * How the Helm dependencies are fetched into the `charts` folder when the Helm tarball is created. Using `helm`, the
+     * `helm dependency build` command is run. Using `native`, the versions are resolved from the `index.yaml` file of the
+     * Helm repositories and the downloaded charts are stored in a local cache, without the `helm` binary. The `native`
+     * resolution doesn't use the credentials configured in Helm, so it only supports the repositories that don't need
+     * them, and the `helm` binary is still used when any dependency uses a repository referenced by its name (`@name` or
+     * `alias:name`) or an OCI registry.
+     */
+    @WithDefault("helm")
+    HelmDependencyResolution dependencyResolution();
+
+    /**
+     * The folder of the local cache of the Helm dependencies, in which the downloaded charts are stored by their digest.
+     * The cache is shared by all the modules and deployment targets of a build, and by all the builds using the same
+     * folder, even when they run at the same time: every chart version is only downloaded once. If not set, it will use
+     * the folder `.cache/quarkus-helm` in the user home.
+     */
+    Optional<String> dependencyCacheDirectory();
+
+    /**
+     * If enabled, the Helm dependencies are only resolved from the local cache and the `file://` repositories, and the
+     * build fails when a dependency is missing. The relative paths of the `file://` repositories are resolved from the
+     * generated chart folder, like Helm does. Only used by the `native` dependency resolution.
+     */
+    @WithDefault("false")
+    boolean dependencyOffline();
+
     /**
      * Alias of the root element in the generated values file.
      */
@@ -135,6 +162,30 @@ public interface HelmChartConfig {
     @WithDefault("false")
     boolean createTarFile();
 
+    /**
+     * Compression level of the gzip Helm tarball file, from `0` (no compression) to `9` (best compression). If not set,
+     * it will use the default level of gzip. Lower levels are useful to speed up the dev builds, for example using
+     * `%dev.quarkus.helm.compression-level=1`. Only used when the extension is `tar.gz` or `tgz`.
+     */
+    Optional<Integer> compressionLevel();
+
+    /**
+     * The number of threads used to compress the gzip Helm tarball file. When greater than `1`, the content is compressed
+     * in independent blocks that are written as a multi-member gzip file, which is supported by Helm and any gzip
+     * tool. Only used when the extension is `tar.gz` or `tgz`.
+     */
+    @WithDefault("1")
+    int compressionThreads();
+
+    /**
+     * If enabled, the Helm tarball file is reproducible: its entries are sorted, and their modification time, owner and
+     * permissions are fixed, so the same chart always produces the same tarball. The modification time is taken from
+     * the `SOURCE_DATE_EPOCH` environment variable if set, or the Unix epoch otherwise. The generated files are added
+     * from memory instead of being read again from the output folder.
+     */
+    @WithDefault("false")
+    boolean reproducibleTarFile();
+
     /**
      * Whether to generate the `values.schema.json` file that is used to validate the Helm Chart input values.
      */
@@ -190,11 +241,56 @@ public interface HelmChartConfig {
     @WithDefault("helm")
     String outputDirectory();
 
+    /**
+     * If enabled, the Helm chart of every deployment target is only generated again when any of its inputs changed since
+     * the previous build: the generated Kubernetes resources, the application properties, the files in the input
+     * directory, the additional templates or CRDs provided by other extensions and the version of this extension.
+     * Otherwise, the chart generated by the previous build is reused as it is.
+     *
+     * This property is ignored when the system properties are mapped (see `quarkus.helm.map-system-properties`), because
+     * the chart then depends on the environment of the build.
+     *
+     * The digests of the inputs and of the generated files are stored in the `.helm-chart-manifest.yaml` file within the
+     * output folder of each deployment target.
+     */
+    @WithDefault("false")
+    boolean incremental();
+
+    /**
+     * The maximum number of deployment targets (`kubernetes`, `openshift`, `knative`...) whose Helm charts are generated
+     * concurrently, the maximum number of Helm charts that are uploaded to the Helm repositories concurrently, and the
+     * maximum number of Helm dependencies of a chart that are resolved concurrently. If not set, it will use the number of
+     * available processors. Use `1` to generate and upload the charts one after another.
+     */
+    Optional<Integer> parallelism();
+
+    /**
+     * If enabled, the time spent in every stage of the Helm chart generation, the number of bytes written and, when
+     * supported by the JVM, the number of bytes allocated are written into the `helm-generation-report.yaml` file within
+     * the output folder of each deployment target. These metrics are always logged at debug level.
+     */
+    @WithDefault("false")
+    boolean generationReport();
+
     /**
      * The configuration to perform Helm charts uploads to Helm repositories..
      */
     HelmRepository repository();
 
+    /**
+     * Additional Helm repositories to upload the Helm charts to, for example mirrors of the main Helm repository. Every
+     * repository supports the same properties as `quarkus.helm.repository`.
+     */
+    Map<String, HelmRepository> repositories();
+
+    /**
+     * What to do when the upload to a Helm repository fails. Using `fail-fast`, the uploads that are not started yet are
+     * skipped and the build fails. Using `best-effort`, all the uploads are performed and the failed ones are only
+     * reported.
+     */
+    @WithDefault("fail-fast")
+    HelmPushPolicy pushPolicy();
+
     /**
      * If enabled, the extension will check whether there are properties using system properties in the form of `${XXX}` and
      * if so, it will expose these properties as env-var values within the generated container resource.
@@ -4,153 +4,375 @@ import static org.apache.commons.lang3.StringUtils.*;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.Reader;
-import java.net.Authenticator;
 import java.net.HttpURLConnection;
-import java.net.PasswordAuthentication;
-import java.net.URL;
-import java.nio.charset.Charset;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.jboss.logging.Logger;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import io.dekorate.utils.Serialization;
+import io.quarkiverse.helm.deployment.utils.ConcurrencyUtils;
+import io.quarkiverse.helm.deployment.utils.HelmChartManifest;
+
 public final class HelmChartUploader {
 
     private static final Logger LOGGER = Logger.getLogger(HelmProcessor.class);
 
     private static final String APPLICATION_GZIP = "application/gzip";
+    private static final String AUTHORIZATION = "Authorization";
     private static final String CONTENT_TYPE = "Content-Type";
+    private static final String ARTIFACTORY_SHA256_HEADER = "X-Checksum-Sha256";
+    private static final String INDEX_YAML = "index.yaml";
+    private static final String DIGEST = "digest";
+    private static final String HEAD = "HEAD";
     private static final String POST = "POST";
     private static final String PUT = "PUT";
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofSeconds(30);
+    private static final Set<Integer> RETRYABLE_STATUS_CODES = Set.of(429, HttpURLConnection.HTTP_BAD_GATEWAY,
+            HttpURLConnection.HTTP_UNAVAILABLE, HttpURLConnection.HTTP_GATEWAY_TIMEOUT);
+
+    /**
+     * The clients are shared by all the pushes, so the connections to the same repository are reused.
+     */
+    private static final Map<Duration, HttpClient> CLIENTS = new ConcurrentHashMap<>();
 
     private HelmChartUploader() {
 
     }
 
-    static void pushToHelmRepository(File tarball, HelmRepository helmRepository) {
-        validate(helmRepository);
-        try {
-            LOGGER.info(
-                    "Pushing the Helm Chart at '" + tarball.getName() + "' to the repository: " + helmRepository.url().get());
-            HttpURLConnection connection = deductConnectionByRepositoryType(tarball, helmRepository);
-
-            writeFileOnConnection(tarball, connection);
-
-            if (connection.getResponseCode() >= HttpURLConnection.HTTP_MULT_CHOICE) {
-                String response;
-                if (connection.getErrorStream() != null) {
-                    response = inputStreamToString(connection.getErrorStream(), Charset.defaultCharset());
-                } else if (connection.getInputStream() != null) {
-                    response = inputStreamToString(connection.getInputStream(), Charset.defaultCharset());
-                } else {
-                    response = "No details provided";
+    /**
+     * Uploads the Helm charts to their Helm repositories, using at most `parallelism` concurrent uploads. The result of
+     * every upload is logged once all of them are finished. Using {@link HelmPushPolicy#FAIL_FAST}, the uploads that are
+     * not started yet are skipped once an upload fails, and the failures are rethrown.
+     *
+     * @return the result of every upload, in the same order as the given uploads.
+     */
+    static List<PushResult> pushToHelmRepositories(List<HelmChartPush> pushes, HelmPushPolicy policy, int parallelism) {
+        // validate all the repositories first, so a wrong configuration doesn't leave a release half published
+        for (HelmChartPush push : pushes) {
+            validate(push.configPrefix(), push.repository());
+        }
+
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Callable<PushResult>> tasks = new ArrayList<>(pushes.size());
+        for (HelmChartPush push : pushes) {
+            tasks.add(() -> {
+                if (policy == HelmPushPolicy.FAIL_FAST && failed.get()) {
+                    return new PushResult(push, PushStatus.SKIPPED, null);
+                }
+
+                try {
+                    return new PushResult(push, pushToHelmRepository(push), null);
+                } catch (RuntimeException e) {
+                    failed.set(true);
+                    return new PushResult(push, PushStatus.FAILED, e);
                 }
-                throw new RuntimeException("Couldn't upload the Helm chart to the Helm repository: " + response);
-            } else {
-                LOGGER.info("Helm chart was successfully uploaded to the Helm repository.");
+            });
+        }
+
+        List<PushResult> results = ConcurrencyUtils.invokeAll("helm-chart-uploader", parallelism, tasks);
+        StringBuilder summary = new StringBuilder();
+        RuntimeException firstFailure = null;
+        for (PushResult result : results) {
+            summary.append("\n  - ").append(result.push()).append(": ").append(result.status());
+            if (result.failure() != null) {
+                summary.append(" (").append(result.failure().getMessage()).append(")");
+                firstFailure = firstFailure == null ? result.failure() : firstFailure;
+            }
+        }
+
+        if (firstFailure == null) {
+            LOGGER.info("Helm charts uploaded to the Helm repositories:" + summary);
+        } else if (policy == HelmPushPolicy.FAIL_FAST) {
+            throw new RuntimeException("Couldn't upload the Helm charts to the Helm repositories:" + summary, firstFailure);
+        } else {
+            LOGGER.warn("Some Helm charts couldn't be uploaded to the Helm repositories:" + summary);
+        }
+
+        return results;
+    }
+
+    /**
+     * Uploads the Helm chart, unless the check of unchanged charts is enabled and the Helm repository already holds the
+     * same chart. The charts are pushed to the OCI registries using the OCI distribution API.
+     */
+    static PushStatus pushToHelmRepository(HelmChartPush push) {
+        if (push.repository().type().orElse(null) == HelmRepositoryType.OCI) {
+            return new HelmOciUploader(getClient(push.repository()), push.repository()).push(push);
+        }
+
+        if (push.repository().skipIfUnchanged() && isUnchanged(push)) {
+            LOGGER.info("Skipping the push of " + push + " since the Helm repository already holds the same chart");
+            return PushStatus.UNCHANGED;
+        }
+
+        pushToHelmRepository(push.tarball(), push.configPrefix(), push.repository());
+        return PushStatus.PUSHED;
+    }
+
+    static void pushToHelmRepository(File tarball, String configPrefix, HelmRepository helmRepository) {
+        validate(configPrefix, helmRepository);
+        LOGGER.info("Pushing the Helm Chart at '" + tarball.getName() + "' to the repository: " + helmRepository.url().get());
+        HttpRequest request = createRequest(tarball, helmRepository);
+        try {
+            HttpResponse<String> response = send(getClient(helmRepository), request, helmRepository);
+            if (response.statusCode() >= HttpURLConnection.HTTP_MULT_CHOICE) {
+                throw new RuntimeException("Couldn't upload the Helm chart to the Helm repository: "
+                        + (isNotEmpty(response.body()) ? response.body() : "No details provided"));
             }
-            connection.disconnect();
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while uploading the Helm chart to the Helm repository", e);
         }
+
+        LOGGER.info("Helm chart was successfully uploaded to the Helm repository.");
     }
 
-    private static void validate(HelmRepository repository) {
+    /**
+     * Sends the request, retrying the I/O errors and the transient HTTP errors (429, 502, 503 and 504) up to
+     * `max-retries` times with an exponential backoff.
+     *
+     * @return the response of the last attempt, that can still be an error response.
+     */
+    static HttpResponse<String> send(HttpClient client, HttpRequest request, HelmRepository helmRepository)
+            throws IOException, InterruptedException {
+        return send(client, request, helmRepository, helmRepository.maxRetries());
+    }
+
+    /**
+     * Sends the request, retrying the I/O errors and the transient HTTP errors up to the given number of times. The
+     * requests that can't be sent twice, like the chunks of an upload, use no retries.
+     *
+     * @return the response of the last attempt, that can still be an error response.
+     */
+    static HttpResponse<String> send(HttpClient client, HttpRequest request, HelmRepository helmRepository,
+            int retries) throws IOException, InterruptedException {
+        int maxRetries = Math.max(0, retries);
+        for (int attempt = 0;; attempt++) {
+            String failure;
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (!isRetryable(response.statusCode()) || attempt >= maxRetries) {
+                    return response;
+                }
+
+                failure = "HTTP " + response.statusCode() + " "
+                        + (isNotEmpty(response.body()) ? response.body() : "No details provided");
+            } catch (IOException e) {
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+
+                failure = e.toString();
+            }
+
+            Duration backoff = getRetryBackoff(helmRepository.retryBackoff(), attempt);
+            LOGGER.warnf("Couldn't send the request %s %s (attempt %d of %d): %s. Retrying in %d ms", request.method(),
+                    request.uri(), attempt + 1, maxRetries + 1, failure, backoff.toMillis());
+            sleep(backoff);
+        }
+    }
+
+    private static void validate(String configPrefix, HelmRepository repository) {
         if (repository.url().isEmpty() || isEmpty(repository.url().get())) {
-            throw new RuntimeException("The push to a Helm repository is enabled (the property `quarkus.helm.repository.push` "
-                    + "is true), but the repository URL was not provided (the property `quarkus.helm.repository.url`).");
+            throw new RuntimeException(String.format("The push to a Helm repository is enabled (the property `%1$s.push` "
+                    + "is true), but the repository URL was not provided (the property `%1$s.url`).", configPrefix));
         }
 
         if (repository.type().isEmpty()) {
-            throw new RuntimeException("The push to a Helm repository is enabled (the property `quarkus.helm.repository.push` "
-                    + "is true), but the repository type was not provided (the property `quarkus.helm.repository.type`).");
+            throw new RuntimeException(String.format("The push to a Helm repository is enabled (the property `%1$s.push` "
+                    + "is true), but the repository type was not provided (the property `%1$s.type`).", configPrefix));
         }
 
         if ((isNotEmpty(repository.getUsername()) && isEmpty(repository.getPassword()))
                 || (isNotEmpty(repository.getPassword()) && isEmpty(repository.getUsername()))) {
-            throw new RuntimeException("The push to a Helm repository is enabled (the property `quarkus.helm.repository.push` "
-                    + "is true), but either the username (the property `quarkus.helm.repository.username`) "
-                    + "or the password (the property `quarkus.helm.repository.password`) was not set.");
+            throw new RuntimeException(String.format("The push to a Helm repository is enabled (the property `%1$s.push` "
+                    + "is true), but either the username (the property `%1$s.username`) "
+                    + "or the password (the property `%1$s.password`) was not set.", configPrefix));
         }
     }
 
-    private static void writeFileOnConnection(File file, HttpURLConnection connection) throws IOException {
-        try (FileInputStream fileInputStream = new FileInputStream(file)) {
-            copyToOutputStream(fileInputStream, connection.getOutputStream());
+    private static boolean isUnchanged(HelmChartPush push) {
+        try {
+            Optional<String> remoteDigest = getRemoteDigest(push);
+            if (remoteDigest.isEmpty()) {
+                LOGGER.debug("The Helm repository doesn't hold " + push + " yet");
+                return false;
+            }
+
+            return remoteDigest.get().equalsIgnoreCase(HelmChartManifest.digestOf(push.tarball().toPath()));
+        } catch (IOException | RuntimeException e) {
+            // the check is only an optimization, so the chart is uploaded when it fails
+            LOGGER.debug("Couldn't check whether the Helm repository already holds " + push, e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while checking the Helm chart in the Helm repository", e);
         }
     }
 
-    private static HttpURLConnection deductConnectionByRepositoryType(File tarball, HelmRepository repository)
-            throws IOException {
+    /**
+     * @return the SHA-256 digest of the chart held by the Helm repository, or empty if it doesn't hold this chart version.
+     */
+    private static Optional<String> getRemoteDigest(HelmChartPush push) throws IOException, InterruptedException {
+        HelmRepository repository = push.repository();
+        HttpClient client = getClient(repository);
+        if (repository.type().get() == HelmRepositoryType.ARTIFACTORY) {
+            // Artifactory returns the checksums of the artifacts as headers
+            HttpRequest request = newRequest(getUploadUrl(push.tarball(), repository), repository)
+                    .method(HEAD, HttpRequest.BodyPublishers.noBody())
+                    .build();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == HttpURLConnection.HTTP_OK
+                    ? response.headers().firstValue(ARTIFACTORY_SHA256_HEADER)
+                    : Optional.empty();
+        }
+
+        String url = appendIfMissing(repository.url().get(), "/");
+        if (repository.type().get() == HelmRepositoryType.NEXUS) {
+            // the index of the Helm hosted repositories includes the digest of every chart version
+            Optional<Map<String, Object>> index = getAsMap(client, newRequest(url + INDEX_YAML, repository));
+            Object entries = index.map(i -> i.get("entries")).orElse(null);
+            if (entries instanceof Map && ((Map<?, ?>) entries).get(push.chartName()) instanceof List) {
+                for (Object version : (List<?>) ((Map<?, ?>) entries).get(push.chartName())) {
+                    if (version instanceof Map && push.chartVersion().equals(((Map<?, ?>) version).get("version"))) {
+                        return Optional.ofNullable(((Map<?, ?>) version).get(DIGEST)).map(String::valueOf);
+                    }
+                }
+            }
+
+            return Optional.empty();
+        }
+
+        // chartmuseum: the chart API returns the details of a chart version
+        return getAsMap(client, newRequest(url + push.chartName() + "/" + push.chartVersion(), repository))
+                .map(chart -> chart.get(DIGEST))
+                .map(String::valueOf);
+    }
+
+    private static Optional<Map<String, Object>> getAsMap(HttpClient client, HttpRequest.Builder request)
+            throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request.GET().build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != HttpURLConnection.HTTP_OK || isEmpty(response.body())) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(Serialization.unmarshal(response.body(), new TypeReference<Map<String, Object>>() {
+        }));
+    }
+
+    static HttpClient getClient(HelmRepository repository) {
+        return CLIENTS.computeIfAbsent(repository.connectTimeout(), HelmChartUploader::createClient);
+    }
+
+    private static HttpClient createClient(Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    private static HttpRequest createRequest(File tarball, HelmRepository repository) {
+        // chartmuseum uses POST on the API URL, whereas the others use PUT on the URL of the chart
+        String method = repository.type().get() == HelmRepositoryType.CHARTMUSEUM ? POST : PUT;
+        HttpRequest.Builder request = newRequest(getUploadUrl(tarball, repository), repository)
+                .header(CONTENT_TYPE, APPLICATION_GZIP);
+        try {
+            // the file is streamed with its length, so it's never loaded in memory
+            return request.method(method, HttpRequest.BodyPublishers.ofFile(tarball.toPath())).build();
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't read the Helm chart at '" + tarball + "'", e);
+        }
+    }
+
+    private static String getUploadUrl(File tarball, HelmRepository repository) {
         if (repository.type().get() == HelmRepositoryType.NEXUS) {
             String url = formatRepositoryURL(tarball, repository);
             if (url.endsWith(".tar.gz")) {
                 url = url.replaceAll("tar.gz$", "tgz");
             }
-            final HttpURLConnection connection = createConnection(repository, url);
-            connection.setRequestMethod(PUT);
-            return connection;
+            return url;
         } else if (repository.type().get() == HelmRepositoryType.ARTIFACTORY) {
-            final HttpURLConnection connection = createConnection(repository, formatRepositoryURL(tarball, repository));
-            connection.setRequestMethod(PUT);
-            return connection;
+            return formatRepositoryURL(tarball, repository);
         }
 
         // chartmuseum
-        return createConnection(repository, repository.url().get());
+        return repository.url().get();
+    }
+
+    private static HttpRequest.Builder newRequest(String url, HelmRepository repository) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url)).timeout(repository.requestTimeout());
+        if (isNotEmpty(repository.getUsername()) && isNotEmpty(repository.getPassword())) {
+            String credentials = repository.getUsername() + ":" + repository.getPassword();
+            request.header(AUTHORIZATION,
+                    "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        return request;
     }
 
     private static String formatRepositoryURL(File file, HelmRepository repository) {
         return String.format("%s%s", appendIfMissing(repository.url().get(), "/"), file.getName());
     }
 
-    private static HttpURLConnection createConnection(HelmRepository repository, String url) throws IOException {
-        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-        connection.setDoOutput(true);
-        connection.setRequestMethod(POST);
-        connection.setRequestProperty(CONTENT_TYPE, APPLICATION_GZIP);
-        verifyAndSetAuthentication(repository);
-        return connection;
+    static boolean isRetryable(int statusCode) {
+        return RETRYABLE_STATUS_CODES.contains(statusCode);
     }
 
-    private static void verifyAndSetAuthentication(HelmRepository helmRepository) {
-        if (isNotEmpty(helmRepository.getUsername()) && isNotEmpty(helmRepository.getPassword())) {
-            PasswordAuthentication authentication = new PasswordAuthentication(helmRepository.getUsername(),
-                    helmRepository.getPassword().toCharArray());
+    static Duration getRetryBackoff(Duration initialBackoff, int attempt) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempt, 16));
+        return backoff.compareTo(MAX_RETRY_BACKOFF) > 0 ? MAX_RETRY_BACKOFF : backoff;
+    }
 
-            Authenticator.setDefault(new Authenticator() {
-                @Override
-                protected PasswordAuthentication getPasswordAuthentication() {
-                    return authentication;
-                }
-            });
+    /**
+     * The upload of the Helm chart of a deployment target to a Helm repository.
+     *
+     * @param configPrefix the configuration prefix of the Helm repository, for example `quarkus.helm.repository`.
+     */
+    record HelmChartPush(String deploymentTarget, String chartName, String chartVersion, File tarball, String configPrefix,
+            HelmRepository repository) {
+        @Override
+        public String toString() {
+            return String.format("'%s' of the deployment target '%s' to '%s'", tarball.getName(), deploymentTarget,
+                    repository.url().orElse(configPrefix));
         }
     }
 
-    private static String inputStreamToString(InputStream input, Charset charset) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        try (Reader reader = new BufferedReader(new InputStreamReader(input, charset))) {
-            int c = 0;
-            while ((c = reader.read()) != -1) {
-                sb.append((char) c);
-            }
-        }
+    record PushResult(HelmChartPush push, PushStatus status, RuntimeException failure) {
+    }
 
-        return sb.toString();
+    enum PushStatus {
+        PUSHED,
+        UNCHANGED,
+        FAILED,
+        SKIPPED
     }
 
-    private static void copyToOutputStream(InputStream source, OutputStream target) throws IOException {
-        byte[] buf = new byte[8192];
-        int length;
-        while ((length = source.read(buf)) != -1) {
-            target.write(buf, 0, length);
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while uploading the Helm chart to the Helm repository", e);
         }
     }
-
 }
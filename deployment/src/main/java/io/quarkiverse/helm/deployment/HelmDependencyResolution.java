@@ -0,0 +1,14 @@
+package io.quarkiverse.helm.deployment;
+
+public enum HelmDependencyResolution {
+    /**
+     * The dependencies are resolved by the extension, using a local cache of the downloaded charts. The charts are
+     * downloaded without the credentials configured in Helm. The `helm` binary is only used for the repositories that are
+     * not supported: the repositories referenced by their name (`@name` or `alias:name`) and the OCI registries.
+     */
+    NATIVE,
+    /**
+     * The dependencies are resolved running the `helm dependency build` command. This is the default.
+     */
+    HELM
+}
@@ -0,0 +1,524 @@
+package io.quarkiverse.helm.deployment;
+
+import static org.apache.commons.lang3.StringUtils.appendIfMissing;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+import static org.apache.commons.lang3.StringUtils.removeEnd;
+import static org.apache.commons.lang3.StringUtils.removeStart;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+import org.jboss.logging.Logger;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.dekorate.utils.Serialization;
+import io.quarkiverse.helm.deployment.utils.ConcurrencyUtils;
+import io.quarkiverse.helm.deployment.utils.HelmChartManifest;
+import io.quarkiverse.helm.deployment.utils.HelmTarArchiver;
+import io.quarkiverse.helm.deployment.utils.VersionConstraint;
+import io.quarkiverse.helm.model.Chart;
+import io.quarkiverse.helm.model.HelmDependency;
+
+/**
+ * Resolves the dependencies of a Helm chart without the `helm` binary, the same way as `helm dependency build` does:
+ * the versions are resolved using the `index.yaml` file of the Helm repositories, the chart tarballs are copied into
+ * the `charts` folder, and the `Chart.lock` file is written.
+ *
+ * The downloaded tarballs are stored in a local cache by their SHA-256 digest, and the index files by the URL of their
+ * Helm repository. The cache is shared by all the deployment targets and the modules of a build, and by all the builds
+ * using the same cache folder: the same dependency (repository, name and version) is only downloaded once, even when
+ * several builds need it at the same time. Using the offline mode, the dependencies are only resolved from the local
+ * cache and the `file://` repositories.
+ */
+final class HelmDependencyResolver {
+
+    private static final Logger LOGGER = Logger.getLogger(HelmProcessor.class);
+
+    static final String CHART_LOCK = "Chart.lock";
+    private static final String CHART_YAML = "Chart.yaml";
+    private static final String CHARTS = "charts";
+    private static final String INDEX_YAML = "index.yaml";
+    private static final String FILE_SCHEME = "file://";
+    private static final String SHA256 = "sha256:";
+    private static final String TGZ = ".tgz";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(5);
+    /**
+     * The index files cached more recently are not fetched again, so a multi-module build only fetches them once.
+     */
+    private static final Duration INDEX_MAX_AGE = Duration.ofMinutes(10);
+    private static final Duration LOCK_RETRY_INTERVAL = Duration.ofMillis(100);
+    /**
+     * Helm hashes the output of `json.Marshal`, that has no indentation, to compute the digest of the `Chart.lock` file.
+     */
+    private static final ObjectWriter COMPACT_JSON_WRITER = Serialization.jsonMapper().writer()
+            .without(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * The index files and the tarballs being fetched, so the concurrent resolutions wait for the same fetch.
+     */
+    private static final ConcurrentMap<String, CompletableFuture<Map<String, Object>>> INDEXES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, CompletableFuture<Path>> TARBALLS = new ConcurrentHashMap<>();
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    private final Path cacheDirectory;
+    private final boolean offline;
+    private final boolean reproducible;
+    private final int parallelism;
+
+    /**
+     * @param parallelism the maximum number of dependencies that are resolved concurrently.
+     */
+    HelmDependencyResolver(Path cacheDirectory, boolean offline, boolean reproducible, int parallelism) {
+        this.cacheDirectory = cacheDirectory.toAbsolutePath().normalize();
+        this.offline = offline;
+        this.reproducible = reproducible;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return the default folder of the local cache, `.cache/quarkus-helm` in the user home.
+     */
+    static Path defaultCacheDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".cache", "quarkus-helm");
+    }
+
+    /**
+     * @return the repositories of the dependencies declared in the `Chart.yaml` file of the chart folder that are not
+     *         supported. Only the `http://`, `https://` and `file://` repositories are supported, but not the repositories
+     *         referenced by their name in the Helm configuration (`@name` or `alias:name`) or the OCI registries.
+     */
+    static List<String> getUnsupportedRepositories(Path chartFolder) throws IOException {
+        return getDependencies(chartFolder).stream()
+                .map(HelmDependency::getRepository)
+                .filter(repository -> repository == null || !(repository.startsWith("http://")
+                        || repository.startsWith("https://") || repository.startsWith(FILE_SCHEME)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Resolves the dependencies declared in the `Chart.yaml` file of the chart folder.
+     *
+     * @return the path of the `Chart.lock` file.
+     */
+    Path resolve(Path chartFolder) throws IOException {
+        List<HelmDependency> dependencies = getDependencies(chartFolder);
+        Path chartsFolder = Files.createDirectories(chartFolder.resolve(CHARTS));
+
+        List<Callable<Map<String, Object>>> tasks = new ArrayList<>(dependencies.size());
+        for (HelmDependency dependency : dependencies) {
+            tasks.add(() -> {
+                Map<String, Object> lock = new LinkedHashMap<>();
+                lock.put("name", dependency.getName());
+                lock.put("version", resolve(chartFolder, chartsFolder, dependency));
+                lock.put("repository", dependency.getRepository());
+                return lock;
+            });
+        }
+
+        List<Map<String, Object>> locks = ConcurrencyUtils.invokeAll("helm-dependencies", parallelism, tasks);
+
+        Map<String, Object> chartLock = new LinkedHashMap<>();
+        chartLock.put("dependencies", locks);
+        chartLock.put("digest", digestOf(dependencies, locks));
+        chartLock.put("generated", (reproducible ? HelmTarArchiver.reproducibleModificationTime().toInstant()
+                : Instant.now()).toString());
+        Path lockFile = chartFolder.resolve(CHART_LOCK);
+        Files.writeString(lockFile, Serialization.asYaml(chartLock));
+        return lockFile;
+    }
+
+    private static List<HelmDependency> getDependencies(Path chartFolder) throws IOException {
+        Chart chart = Serialization.unmarshal(Files.readString(chartFolder.resolve(CHART_YAML)), Chart.class);
+        return Optional.ofNullable(chart.getDependencies()).orElse(Collections.emptyList());
+    }
+
+    /**
+     * Copies the chart of the dependency into the charts folder.
+     *
+     * @return the resolved version.
+     */
+    private String resolve(Path chartFolder, Path chartsFolder, HelmDependency dependency) throws IOException {
+        String repository = dependency.getRepository();
+        VersionConstraint constraint = VersionConstraint.parse(isEmpty(dependency.getVersion()) ? "*"
+                : dependency.getVersion());
+        if (repository.startsWith(FILE_SCHEME)) {
+            // relative paths are resolved from the chart folder, like Helm does
+            Path path = chartFolder.resolve(removeStart(repository, FILE_SCHEME)).normalize();
+            if (Files.isRegularFile(path.resolve(CHART_YAML)) && !Files.exists(path.resolve(INDEX_YAML))) {
+                return packageChartFolder(path, chartsFolder, dependency, constraint);
+            }
+        }
+
+        String repositoryUrl = repository.startsWith(FILE_SCHEME)
+                ? chartFolder.resolve(removeStart(repository, FILE_SCHEME)).normalize().toUri().toString()
+                : repository;
+        Optional<String> exactVersion = constraint.exactVersion();
+        Optional<Path> tarball = exactVersion.isPresent()
+                ? getCachedTarball(repositoryUrl, dependency.getName(), exactVersion.get(), null)
+                : Optional.empty();
+        String version;
+        if (tarball.isPresent()) {
+            // the exact versions held by the cache are resolved without the index file
+            version = exactVersion.get();
+        } else {
+            Map<String, Object> entry = findEntry(getIndex(repositoryUrl, dependency), dependency, constraint)
+                    .orElseThrow(() -> new RuntimeException(String.format("Couldn't find a version of the Helm "
+                            + "dependency '%s' that matches '%s' in the Helm repository '%s'", dependency.getName(),
+                            constraint, repository)));
+            version = String.valueOf(entry.get("version"));
+            tarball = Optional.of(getTarball(repositoryUrl, dependency, version, entry));
+        }
+
+        Files.copy(tarball.get(), chartsFolder.resolve(dependency.getName() + "-" + version + TGZ),
+                StandardCopyOption.REPLACE_EXISTING);
+        LOGGER.debugf("Resolved the Helm dependency '%s' with version '%s' from '%s'", dependency.getName(), version,
+                repository);
+        return version;
+    }
+
+    /**
+     * @return the index file of the Helm repository, from the local cache if it was cached recently.
+     */
+    private Map<String, Object> getIndex(String repositoryUrl, HelmDependency dependency) throws IOException {
+        URI url = URI.create(appendIfMissing(repositoryUrl, "/") + INDEX_YAML);
+        if (repositoryUrl.startsWith("file:")) {
+            return parseIndex(download(url));
+        }
+
+        Path cachedIndex = cacheDirectory.resolve("repositories").resolve(digestOf(repositoryUrl)).resolve(INDEX_YAML);
+        return fetchOnce(INDEXES, cachedIndex.toString(), () -> {
+            if (Files.exists(cachedIndex) && (offline || Files.getLastModifiedTime(cachedIndex).toInstant()
+                    .isAfter(Instant.now().minus(INDEX_MAX_AGE)))) {
+                return parseIndex(Files.readAllBytes(cachedIndex));
+            }
+
+            if (offline) {
+                throw new RuntimeException(String.format("Couldn't resolve the Helm dependency '%s' offline: the local "
+                        + "cache doesn't hold the index of the Helm repository '%s'.", dependency.getName(),
+                        dependency.getRepository()));
+            }
+
+            byte[] content = download(url);
+            writeAtomically(cachedIndex, content);
+            return parseIndex(content);
+        });
+    }
+
+    /**
+     * @return the entry of the index file with the highest version that matches the constraint.
+     */
+    @SuppressWarnings("unchecked")
+    private static Optional<Map<String, Object>> findEntry(Map<String, Object> index, HelmDependency dependency,
+            VersionConstraint constraint) {
+        Object entries = index.get("entries") instanceof Map ? ((Map<?, ?>) index.get("entries")).get(dependency.getName())
+                : null;
+        if (!(entries instanceof List)) {
+            return Optional.empty();
+        }
+
+        Map<String, Map<String, Object>> entriesByVersion = new LinkedHashMap<>();
+        for (Object entry : (List<?>) entries) {
+            if (entry instanceof Map && ((Map<?, ?>) entry).get("version") != null) {
+                entriesByVersion.put(String.valueOf(((Map<?, ?>) entry).get("version")), (Map<String, Object>) entry);
+            }
+        }
+
+        return constraint.highest(entriesByVersion.keySet()).map(entriesByVersion::get);
+    }
+
+    /**
+     * @return the tarball of the entry within the local cache, which is downloaded if the cache doesn't hold it yet.
+     *         The download is guarded by a file lock, so the builds sharing the cache don't download the same chart.
+     */
+    private Path getTarball(String repositoryUrl, HelmDependency dependency, String version, Map<String, Object> entry)
+            throws IOException {
+        String key = referenceKey(repositoryUrl, dependency.getName(), version);
+        return fetchOnce(TARBALLS, cacheDirectory + key, () -> {
+            Optional<Path> cached = getCachedTarball(repositoryUrl, dependency.getName(), version, entry);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+
+            if (offline && !repositoryUrl.startsWith("file:")) {
+                throw new RuntimeException(String.format("Couldn't resolve the Helm dependency '%s' with version '%s' "
+                        + "offline: the local cache doesn't hold its chart.", dependency.getName(), version));
+            }
+
+            Path lockFile = cacheDirectory.resolve("locks").resolve(digestOf(key) + ".lock");
+            Files.createDirectories(lockFile.getParent());
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    FileLock lock = lock(channel)) {
+                // another build may have downloaded it while waiting for the lock
+                cached = getCachedTarball(repositoryUrl, dependency.getName(), version, entry);
+                if (cached.isPresent()) {
+                    return cached.get();
+                }
+
+                URI url = getDownloadUrl(repositoryUrl, entry);
+                byte[] content = download(url);
+                String digest = HelmChartManifest.digestOf(content);
+                Object expectedDigest = entry.get("digest");
+                if (expectedDigest != null
+                        && !removeStart(String.valueOf(expectedDigest), SHA256).equalsIgnoreCase(digest)) {
+                    throw new RuntimeException(String.format("The digest of the Helm dependency '%s' downloaded from "
+                            + "'%s' is '%s', but the Helm repository index expects '%s'", dependency.getName(), url,
+                            digest, expectedDigest));
+                }
+
+                Path tarball = getBlob(digest);
+                writeAtomically(tarball, content);
+                writeAtomically(getReference(key), digest.getBytes(StandardCharsets.UTF_8));
+                return tarball;
+            }
+        });
+    }
+
+    /**
+     * @param entry the entry of the index file, or null if the index file was not read.
+     * @return the tarball within the local cache, found by the digest of the entry or by the repository, name and version.
+     */
+    private Optional<Path> getCachedTarball(String repositoryUrl, String name, String version, Map<String, Object> entry)
+            throws IOException {
+        String digest = null;
+        if (entry != null && entry.get("digest") != null) {
+            digest = removeStart(String.valueOf(entry.get("digest")), SHA256);
+        } else {
+            Path reference = getReference(referenceKey(repositoryUrl, name, version));
+            if (Files.exists(reference)) {
+                digest = Files.readString(reference).trim();
+            }
+        }
+
+        Path tarball = digest == null ? null : getBlob(digest);
+        return tarball != null && Files.exists(tarball) ? Optional.of(tarball) : Optional.empty();
+    }
+
+    private Path getBlob(String digest) {
+        return cacheDirectory.resolve("blobs").resolve("sha256").resolve(digest.toLowerCase() + TGZ);
+    }
+
+    private Path getReference(String key) {
+        return cacheDirectory.resolve("references").resolve(digestOf(key));
+    }
+
+    private static String referenceKey(String repositoryUrl, String name, String version) {
+        return removeEnd(repositoryUrl, "/") + "|" + name + "|" + version;
+    }
+
+    private static URI getDownloadUrl(String repositoryUrl, Map<String, Object> entry) {
+        Object urls = entry.get("urls");
+        if (!(urls instanceof List) || ((List<?>) urls).isEmpty()) {
+            throw new RuntimeException("The Helm repository '" + repositoryUrl + "' doesn't provide the URL of the chart '"
+                    + entry.get("name") + "' with version '" + entry.get("version") + "'");
+        }
+
+        // the URLs can be relative to the Helm repository
+        return URI.create(appendIfMissing(repositoryUrl, "/")).resolve(String.valueOf(((List<?>) urls).get(0)));
+    }
+
+    /**
+     * Packages the chart folder referenced by a `file://` repository, like `helm dependency build` does.
+     */
+    private String packageChartFolder(Path folder, Path chartsFolder, HelmDependency dependency,
+            VersionConstraint constraint) throws IOException {
+        Chart chart = Serialization.unmarshal(Files.readString(folder.resolve(CHART_YAML)), Chart.class);
+        if (!constraint.matches(chart.getVersion())) {
+            throw new RuntimeException(String.format("The version '%s' of the Helm dependency '%s' at '%s' doesn't "
+                    + "match '%s'", chart.getVersion(), dependency.getName(), folder, constraint));
+        }
+
+        Map<String, HelmTarArchiver.Content> entries = new HashMap<>();
+        try (Stream<Path> files = Files.walk(folder)) {
+            for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                entries.put(chart.getName() + "/" + folder.relativize(file).toString().replace('\\', '/'),
+                        HelmTarArchiver.Content.of(file));
+            }
+        }
+
+        HelmTarArchiver.createReproducibleTarBall(chartsFolder.resolve(chart.getName() + "-" + chart.getVersion() + TGZ)
+                .toFile(), entries, "tgz", Deflater.DEFAULT_COMPRESSION, 1);
+        return chart.getVersion();
+    }
+
+    private static byte[] download(URI url) throws IOException {
+        if ("file".equals(url.getScheme())) {
+            return Files.readAllBytes(Paths.get(url));
+        }
+
+        LOGGER.info("Downloading '" + url + "'");
+        try {
+            HttpResponse<byte[]> response = CLIENT.send(HttpRequest.newBuilder(url).timeout(REQUEST_TIMEOUT).GET().build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                throw new RuntimeException("Couldn't download '" + url + "': HTTP " + response.statusCode());
+            }
+
+            return response.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while downloading '" + url + "'", e);
+        }
+    }
+
+    /**
+     * Writes the file using a temporary file, so the concurrent builds sharing the cache never read a partial file.
+     */
+    private static void writeAtomically(Path file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temporary = file.resolveSibling("." + file.getFileName() + "." + UUID.randomUUID());
+        Files.write(temporary, content);
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static Map<String, Object> parseIndex(byte[] content) {
+        return Serialization.unmarshal(new String(content, StandardCharsets.UTF_8),
+                new TypeReference<Map<String, Object>>() {
+                });
+    }
+
+    /**
+     * Runs the fetch unless the same fetch is already running, in which case it waits for its result.
+     */
+    private static <T> T fetchOnce(ConcurrentMap<String, CompletableFuture<T>> fetching, String key, Fetch<T> fetch)
+            throws IOException {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        CompletableFuture<T> running = fetching.putIfAbsent(key, future);
+        if (running != null) {
+            try {
+                return running.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                }
+                throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException
+                        : new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for '" + key + "'", e);
+            }
+        }
+
+        try {
+            T result = fetch.get();
+            future.complete(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            fetching.remove(key, future);
+        }
+    }
+
+    /**
+     * Locks the file, waiting while another thread of the same JVM, for example another module of a parallel build,
+     * holds the lock.
+     */
+    private static FileLock lock(FileChannel channel) throws IOException {
+        while (true) {
+            try {
+                return channel.lock();
+            } catch (OverlappingFileLockException e) {
+                try {
+                    Thread.sleep(LOCK_RETRY_INTERVAL.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for the lock of the local cache", interrupted);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the digest of the dependencies and their resolved versions, computed the same way as Helm, that hashes the
+     *         compact JSON of both lists, so Helm doesn't consider the `Chart.lock` file out of sync with the `Chart.yaml`
+     *         file.
+     */
+    static String digestOf(List<HelmDependency> dependencies, List<Map<String, Object>> locks) {
+        List<Map<String, Object>> requirements = new ArrayList<>();
+        for (HelmDependency dependency : dependencies) {
+            // the fields of the Helm dependencies in the same order as in Helm
+            Map<String, Object> requirement = new LinkedHashMap<>();
+            requirement.put("name", dependency.getName());
+            putIfNotEmpty(requirement, "version", dependency.getVersion());
+            requirement.put("repository", dependency.getRepository());
+            putIfNotEmpty(requirement, "condition", dependency.getCondition());
+            if (dependency.getTags() != null && dependency.getTags().length > 0) {
+                requirement.put("tags", dependency.getTags());
+            }
+            if (Boolean.TRUE.equals(dependency.getEnabled())) {
+                requirement.put("enabled", true);
+            }
+            putIfNotEmpty(requirement, "alias", dependency.getAlias());
+            requirements.add(requirement);
+        }
+
+        try {
+            String json = COMPACT_JSON_WRITER.writeValueAsString(List.of(requirements, locks));
+            // Go escapes the HTML characters in JSON
+            json = json.replace("<", "\\u003c").replace(">", "\\u003e").replace("&", "\\u0026");
+            return SHA256 + HelmChartManifest.digestOf(json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't compute the digest of the Helm dependencies", e);
+        }
+    }
+
+    private static void putIfNotEmpty(Map<String, Object> map, String key, String value) {
+        if (!isEmpty(value)) {
+            map.put(key, value);
+        }
+    }
+
+    private static String digestOf(String value) {
+        return HelmChartManifest.digestOf(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @FunctionalInterface
+    private interface Fetch<T> {
+        T get() throws IOException;
+    }
+}
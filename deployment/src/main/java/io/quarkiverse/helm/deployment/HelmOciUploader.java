@@ -0,0 +1,453 @@
+package io.quarkiverse.helm.deployment;
+
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+import static org.apache.commons.lang3.StringUtils.removeEnd;
+import static org.apache.commons.lang3.StringUtils.removeStart;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.jboss.logging.Logger;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.dekorate.utils.Serialization;
+import io.quarkiverse.helm.deployment.HelmChartUploader.HelmChartPush;
+import io.quarkiverse.helm.deployment.HelmChartUploader.PushStatus;
+import io.quarkiverse.helm.deployment.utils.HelmChartManifest;
+
+/**
+ * Pushes the Helm charts to OCI registries using the OCI distribution API, the same way as `helm push` does: the chart
+ * metadata is uploaded as the config blob, the chart tarball as the only layer, and the manifest that references both
+ * blobs is tagged using the chart version.
+ */
+final class HelmOciUploader {
+
+    private static final Logger LOGGER = Logger.getLogger(HelmProcessor.class);
+
+    static final String OCI_SCHEME = "oci://";
+    static final String CONFIG_MEDIA_TYPE = "application/vnd.cncf.helm.config.v1+json";
+    static final String CHART_MEDIA_TYPE = "application/vnd.cncf.helm.chart.content.v1.tar+gzip";
+    static final String MANIFEST_MEDIA_TYPE = "application/vnd.oci.image.manifest.v1+json";
+    static final int DEFAULT_CHUNK_SIZE = 5 * 1024 * 1024;
+
+    private static final String AUTHORIZATION = "Authorization";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String CONTENT_RANGE = "Content-Range";
+    private static final String RANGE = "Range";
+    private static final String LOCATION = "Location";
+    private static final String WWW_AUTHENTICATE = "WWW-Authenticate";
+    private static final String DOCKER_CONTENT_DIGEST = "Docker-Content-Digest";
+    private static final String APPLICATION_OCTET_STREAM = "application/octet-stream";
+    private static final String SHA256 = "sha256:";
+    private static final String CHART_YAML = "Chart.yaml";
+    private static final int RANGE_NOT_SATISFIABLE = 416;
+    private static final int NO_RETRIES = 0;
+    private static final Pattern CHALLENGE_PARAMETER = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+    /**
+     * The config and the manifest are compact JSON like the ones pushed by Helm, while the dekorate mapper indents them.
+     */
+    private static final ObjectWriter JSON_WRITER = Serialization.jsonMapper().writer()
+            .without(SerializationFeature.INDENT_OUTPUT);
+
+    private final HttpClient client;
+    private final HelmRepository repository;
+    private final int chunkSize;
+    private String authorization;
+
+    HelmOciUploader(HttpClient client, HelmRepository repository) {
+        this(client, repository, DEFAULT_CHUNK_SIZE);
+    }
+
+    HelmOciUploader(HttpClient client, HelmRepository repository, int chunkSize) {
+        this.client = client;
+        this.repository = repository;
+        this.chunkSize = chunkSize;
+        if (isNotEmpty(repository.getUsername()) && isNotEmpty(repository.getPassword())) {
+            this.authorization = "Basic " + basicCredentials();
+        }
+    }
+
+    /**
+     * Pushes the Helm chart, unless the check of unchanged charts is enabled and the registry already holds the same
+     * manifest for the chart version.
+     */
+    PushStatus push(HelmChartPush push) {
+        try {
+            return doPush(push);
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't push the Helm chart to the OCI registry: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while pushing the Helm chart to the OCI registry", e);
+        }
+    }
+
+    private PushStatus doPush(HelmChartPush push) throws IOException, InterruptedException {
+        File tarball = push.tarball();
+        if (!tarball.getName().endsWith(".tgz") && !tarball.getName().endsWith(".tar.gz")) {
+            throw new RuntimeException("Couldn't push the Helm chart '" + tarball.getName() + "' to the OCI registry: "
+                    + "only gzip tarballs are supported, use the extension `tar.gz` or `tgz`.");
+        }
+
+        URI registry = getRegistry(repository.url().get());
+        String name = getRepositoryName(repository.url().get(), push.chartName());
+        String tag = push.chartVersion().replace('+', '_');
+
+        byte[] config = getConfig(tarball);
+        String configDigest = SHA256 + HelmChartManifest.digestOf(config);
+        String chartDigest = SHA256 + HelmChartManifest.digestOf(tarball.toPath());
+        byte[] manifest = getManifest(push, configDigest, config.length, chartDigest, tarball.length());
+        String manifestDigest = SHA256 + HelmChartManifest.digestOf(manifest);
+        URI manifestUri = registry.resolve("/v2/" + name + "/manifests/" + tag);
+
+        if (repository.skipIfUnchanged() && manifestDigest.equals(getRemoteManifestDigest(manifestUri, name).orElse(null))) {
+            LOGGER.info("Skipping the push of " + push + " since the OCI registry already holds the same chart");
+            return PushStatus.UNCHANGED;
+        }
+
+        LOGGER.info("Pushing the Helm Chart at '" + tarball.getName() + "' to the OCI registry: " + registry.getAuthority()
+                + "/" + name + ":" + tag);
+        pushBlob(registry, name, configDigest, new BlobContent(config));
+        pushBlob(registry, name, chartDigest, new BlobContent(tarball));
+
+        HttpResponse<String> response = send(newRequest(manifestUri)
+                .header(CONTENT_TYPE, MANIFEST_MEDIA_TYPE)
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(manifest)), name);
+        check(response, "upload the manifest of the Helm chart");
+        LOGGER.info("Helm chart was successfully pushed to the OCI registry with digest " + manifestDigest + ".");
+        return PushStatus.PUSHED;
+    }
+
+    /**
+     * Uploads the blob in chunks, unless the registry already holds a blob with the same digest.
+     */
+    private void pushBlob(URI registry, String name, String digest, BlobContent content)
+            throws IOException, InterruptedException {
+        URI blobUri = registry.resolve("/v2/" + name + "/blobs/" + digest);
+        HttpResponse<String> exists = send(newRequest(blobUri).method("HEAD", HttpRequest.BodyPublishers.noBody()), name);
+        if (exists.statusCode() == HttpURLConnection.HTTP_OK) {
+            LOGGER.debug("The OCI registry already holds the blob " + digest);
+            return;
+        }
+
+        Upload upload = startUpload(registry, name, digest);
+        long size = content.size();
+        int attempt = 0;
+        while (upload.offset() < size) {
+            byte[] chunk = content.read(upload.offset(), (int) Math.min(chunkSize, size - upload.offset()));
+            String failure;
+            try {
+                // the registry might have accepted the chunk before the failure, so the chunk is never sent twice
+                HttpResponse<String> response = send(newRequest(upload.location())
+                        .header(CONTENT_TYPE, APPLICATION_OCTET_STREAM)
+                        .header(CONTENT_RANGE, upload.offset() + "-" + (upload.offset() + chunk.length - 1))
+                        .method("PATCH", HttpRequest.BodyPublishers.ofByteArray(chunk)), name, NO_RETRIES);
+                if (response.statusCode() < HttpURLConnection.HTTP_MULT_CHOICE) {
+                    upload = new Upload(getLocation(upload.location(), response), upload.offset() + chunk.length);
+                    attempt = 0;
+                    continue;
+                }
+
+                if ((!HelmChartUploader.isRetryable(response.statusCode())
+                        && response.statusCode() != RANGE_NOT_SATISFIABLE) || attempt >= repository.maxRetries()) {
+                    check(response, "upload the blob " + digest);
+                }
+
+                failure = "HTTP " + response.statusCode();
+            } catch (IOException e) {
+                if (attempt >= repository.maxRetries()) {
+                    throw e;
+                }
+
+                failure = e.toString();
+            }
+
+            Duration backoff = HelmChartUploader.getRetryBackoff(repository.retryBackoff(), attempt++);
+            LOGGER.warnf("Couldn't upload the chunk of the blob %s at offset %d: %s. Resuming the upload in %d ms", digest,
+                    upload.offset(), failure, backoff.toMillis());
+            Thread.sleep(backoff.toMillis());
+            upload = resumeUpload(registry, name, digest, upload);
+        }
+
+        URI location = upload.location();
+        String separator = location.getRawQuery() == null ? "?" : "&";
+        HttpResponse<String> response = send(newRequest(URI.create(location + separator + "digest=" + encode(digest)))
+                .header(CONTENT_TYPE, APPLICATION_OCTET_STREAM)
+                .PUT(HttpRequest.BodyPublishers.noBody()), name);
+        check(response, "complete the upload of the blob " + digest);
+    }
+
+    private Upload startUpload(URI registry, String name, String digest) throws IOException, InterruptedException {
+        URI uploadsUri = registry.resolve("/v2/" + name + "/blobs/uploads/");
+        HttpResponse<String> response = send(newRequest(uploadsUri).POST(HttpRequest.BodyPublishers.noBody()), name);
+        check(response, "start the upload of the blob " + digest);
+        return new Upload(getLocation(uploadsUri, response), 0);
+    }
+
+    /**
+     * Asks the registry how much of the blob it holds, so the upload continues from there. When the registry doesn't
+     * know the upload anymore, a new upload is started.
+     */
+    private Upload resumeUpload(URI registry, String name, String digest, Upload upload)
+            throws IOException, InterruptedException {
+        HttpResponse<String> response = send(newRequest(upload.location()).GET(), name);
+        if (response.statusCode() >= HttpURLConnection.HTTP_MULT_CHOICE) {
+            LOGGER.debug("The OCI registry lost the upload of the blob " + digest + " (HTTP " + response.statusCode()
+                    + "), so it's started again");
+            return startUpload(registry, name, digest);
+        }
+
+        // the range of the received bytes, for example `0-1023`, that is inclusive
+        String range = removeStart(response.headers().firstValue(RANGE).orElse(""), "bytes=");
+        long offset = range.contains("-") ? Long.parseLong(range.substring(range.indexOf('-') + 1).trim()) + 1 : 0;
+        URI location = response.headers().firstValue(LOCATION).isPresent()
+                ? getLocation(upload.location(), response)
+                : upload.location();
+        return new Upload(location, offset);
+    }
+
+    private Optional<String> getRemoteManifestDigest(URI manifestUri, String name) {
+        try {
+            HttpResponse<String> response = send(newRequest(manifestUri)
+                    .header("Accept", MANIFEST_MEDIA_TYPE)
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody()), name);
+            return response.statusCode() == HttpURLConnection.HTTP_OK
+                    ? response.headers().firstValue(DOCKER_CONTENT_DIGEST)
+                    : Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            // the check is only an optimization, so the chart is pushed when it fails
+            LOGGER.debug("Couldn't check whether the OCI registry already holds the manifest " + manifestUri, e);
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while checking the Helm chart in the OCI registry", e);
+        }
+    }
+
+    /**
+     * Sends the request, and authenticates again using a bearer token when the registry asks for it.
+     *
+     * @param name the repository name used as scope of the bearer token.
+     */
+    private HttpResponse<String> send(HttpRequest.Builder request, String name) throws IOException, InterruptedException {
+        return send(request, name, repository.maxRetries());
+    }
+
+    /**
+     * @param retries the number of times the I/O errors and the transient HTTP errors are retried.
+     */
+    private HttpResponse<String> send(HttpRequest.Builder request, String name, int retries)
+            throws IOException, InterruptedException {
+        if (authorization != null) {
+            request.setHeader(AUTHORIZATION, authorization);
+        }
+
+        HttpResponse<String> response = HelmChartUploader.send(client, request.build(), repository, retries);
+        if (response.statusCode() == HttpURLConnection.HTTP_UNAUTHORIZED && authenticate(response, name)) {
+            request.setHeader(AUTHORIZATION, authorization);
+            response = HelmChartUploader.send(client, request.build(), repository, retries);
+        }
+
+        return response;
+    }
+
+    /**
+     * Requests a bearer token following the challenge of the registry, for example:
+     * `Bearer realm="https://auth.example.com/token",service="registry.example.com",scope="repository:charts/app:pull"`.
+     *
+     * @return whether a new token was obtained.
+     */
+    private boolean authenticate(HttpResponse<?> challengeResponse, String name) throws IOException, InterruptedException {
+        String challenge = challengeResponse.headers().firstValue(WWW_AUTHENTICATE).orElse("");
+        if (!challenge.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return false;
+        }
+
+        Map<String, String> parameters = new LinkedHashMap<>();
+        Matcher matcher = CHALLENGE_PARAMETER.matcher(challenge);
+        while (matcher.find()) {
+            parameters.put(matcher.group(1), matcher.group(2));
+        }
+
+        String realm = parameters.get("realm");
+        if (realm == null) {
+            return false;
+        }
+
+        StringBuilder url = new StringBuilder(realm).append(realm.contains("?") ? "&" : "?")
+                .append("scope=").append(encode("repository:" + name + ":pull,push"));
+        if (parameters.containsKey("service")) {
+            url.append("&service=").append(encode(parameters.get("service")));
+        }
+
+        HttpRequest.Builder request = newRequest(URI.create(url.toString())).GET();
+        if (isNotEmpty(repository.getUsername()) && isNotEmpty(repository.getPassword())) {
+            request.header(AUTHORIZATION, "Basic " + basicCredentials());
+        }
+
+        HttpResponse<String> response = HelmChartUploader.send(client, request.build(), repository);
+        check(response, "get a token from '" + realm + "'");
+        Map<String, Object> token = Serialization.unmarshal(response.body(), new TypeReference<Map<String, Object>>() {
+        });
+        Object value = token.get("token") != null ? token.get("token") : token.get("access_token");
+        if (value == null) {
+            return false;
+        }
+
+        authorization = "Bearer " + value;
+        return true;
+    }
+
+    private HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(repository.requestTimeout());
+    }
+
+    /**
+     * @return the chart metadata as JSON, taken from the `Chart.yaml` file within the tarball.
+     */
+    private static byte[] getConfig(File tarball) throws IOException {
+        try (InputStream input = Files.newInputStream(tarball.toPath());
+                // the tarballs compressed in parallel are made of several gzip members, that GZIPInputStream reads in order
+                TarArchiveInputStream tar = new TarArchiveInputStream(new GZIPInputStream(input))) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextEntry()) != null) {
+                // the Chart.yaml file of the chart, not of the dependencies
+                if (entry.getName().split("/").length == 2 && entry.getName().endsWith("/" + CHART_YAML)) {
+                    Map<String, Object> chart = Serialization.unmarshal(new String(tar.readAllBytes(),
+                            StandardCharsets.UTF_8), new TypeReference<Map<String, Object>>() {
+                            });
+                    return JSON_WRITER.writeValueAsBytes(chart);
+                }
+            }
+        }
+
+        throw new RuntimeException("Couldn't find the " + CHART_YAML + " file in the Helm chart '" + tarball + "'");
+    }
+
+    private static byte[] getManifest(HelmChartPush push, String configDigest, long configSize, String chartDigest,
+            long chartSize) throws IOException {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("schemaVersion", 2);
+        manifest.put("mediaType", MANIFEST_MEDIA_TYPE);
+        manifest.put("config", descriptor(CONFIG_MEDIA_TYPE, configDigest, configSize));
+        manifest.put("layers", List.of(descriptor(CHART_MEDIA_TYPE, chartDigest, chartSize)));
+        Map<String, String> annotations = new LinkedHashMap<>();
+        annotations.put("org.opencontainers.image.title", push.chartName());
+        annotations.put("org.opencontainers.image.version", push.chartVersion());
+        manifest.put("annotations", annotations);
+        return JSON_WRITER.writeValueAsBytes(manifest);
+    }
+
+    private static Map<String, Object> descriptor(String mediaType, String digest, long size) {
+        Map<String, Object> descriptor = new LinkedHashMap<>();
+        descriptor.put("mediaType", mediaType);
+        descriptor.put("digest", digest);
+        descriptor.put("size", size);
+        return descriptor;
+    }
+
+    /**
+     * @return the base URI of the registry. The `oci://` scheme uses HTTPS.
+     */
+    static URI getRegistry(String url) {
+        URI uri = URI.create(url.startsWith(OCI_SCHEME) ? "https://" + removeStart(url, OCI_SCHEME) : url);
+        return URI.create(uri.getScheme() + "://" + uri.getRawAuthority() + "/");
+    }
+
+    /**
+     * @return the name of the repository in the registry, that is the namespace of the URL followed by the chart name.
+     */
+    static String getRepositoryName(String url, String chartName) {
+        URI uri = URI.create(url.startsWith(OCI_SCHEME) ? "https://" + removeStart(url, OCI_SCHEME) : url);
+        String namespace = removeEnd(removeStart(Optional.ofNullable(uri.getRawPath()).orElse(""), "/"), "/");
+        return namespace.isEmpty() ? chartName : namespace + "/" + chartName;
+    }
+
+    private static URI getLocation(URI base, HttpResponse<?> response) {
+        // the location can be relative to the registry
+        return base.resolve(response.headers().firstValue(LOCATION).orElseThrow(() -> new RuntimeException(
+                "The OCI registry didn't return the location of the upload: " + response.uri())));
+    }
+
+    private static void check(HttpResponse<String> response, String action) {
+        if (response.statusCode() >= HttpURLConnection.HTTP_MULT_CHOICE) {
+            throw new RuntimeException("Couldn't " + action + " in the OCI registry: HTTP " + response.statusCode() + " "
+                    + (isNotEmpty(response.body()) ? response.body() : "No details provided"));
+        }
+    }
+
+    private String basicCredentials() {
+        String credentials = repository.getUsername() + ":" + repository.getPassword();
+        return Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * An upload session of a blob, and the offset of the next chunk to upload.
+     */
+    private record Upload(URI location, long offset) {
+    }
+
+    /**
+     * The content of a blob, either in memory or in a file that is read one chunk at a time.
+     */
+    private static final class BlobContent {
+        private final byte[] bytes;
+        private final File file;
+
+        BlobContent(byte[] bytes) {
+            this.bytes = bytes;
+            this.file = null;
+        }
+
+        BlobContent(File file) {
+            this.bytes = null;
+            this.file = file;
+        }
+
+        long size() {
+            return bytes != null ? bytes.length : file.length();
+        }
+
+        byte[] read(long offset, int length) throws IOException {
+            byte[] chunk = new byte[length];
+            if (bytes != null) {
+                System.arraycopy(bytes, (int) offset, chunk, 0, length);
+            } else {
+                try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+                    input.seek(offset);
+                    input.readFully(chunk);
+                }
+            }
+
+            return chunk;
+        }
+    }
+}
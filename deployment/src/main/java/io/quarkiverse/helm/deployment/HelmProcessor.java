@@ -1,6 +1,7 @@
 package io.quarkiverse.helm.deployment;
 
-import static io.quarkiverse.helm.deployment.HelmChartUploader.pushToHelmRepository;
+import static io.quarkiverse.helm.deployment.HelmChartUploader.pushToHelmRepositories;
+import static io.quarkiverse.helm.deployment.utils.HelmConfigUtils.getRepositoriesToPush;
 import static io.quarkiverse.helm.deployment.utils.SystemPropertiesUtils.getPropertyFromSystem;
 import static io.quarkiverse.helm.deployment.utils.SystemPropertiesUtils.getSystemProperties;
 import static io.quarkiverse.helm.deployment.utils.SystemPropertiesUtils.hasSystemProperties;
@@ -9,6 +10,8 @@ import static org.apache.commons.lang3.StringUtils.EMPTY;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -16,13 +19,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Scanner;
-import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
@@ -37,9 +39,14 @@ import io.dekorate.kubernetes.config.ContainerBuilder;
 import io.dekorate.kubernetes.decorator.AddInitContainerDecorator;
 import io.dekorate.project.Project;
 import io.dekorate.utils.Serialization;
+import io.quarkiverse.helm.deployment.HelmChartUploader.HelmChartPush;
 import io.quarkiverse.helm.deployment.decorators.LowPriorityAddEnvVarDecorator;
 import io.quarkiverse.helm.deployment.rules.ConfigReferenceStrategyManager;
+import io.quarkiverse.helm.deployment.utils.BuildTimePropertiesMatcher;
+import io.quarkiverse.helm.deployment.utils.ConcurrencyUtils;
+import io.quarkiverse.helm.deployment.utils.HelmChartManifest;
 import io.quarkiverse.helm.deployment.utils.HelmConfigUtils;
+import io.quarkiverse.helm.deployment.utils.SystemPropertiesUtils.SystemProperty;
 import io.quarkiverse.helm.model.Chart;
 import io.quarkiverse.helm.model.ValuesSchema;
 import io.quarkiverse.helm.spi.AdditionalHelmCRDBuildItem;
@@ -67,7 +74,6 @@ public class HelmProcessor {
 
     private static final String NAME_FORMAT_REG_EXP = "[a-z0-9]([-a-z0-9]*[a-z0-9])?(\\.[a-z0-9]([-a-z0-9]*[a-z0-9])?)*";
     private static final List<String> HELM_INVALID_CHARACTERS = Arrays.asList("-");
-    private static final String BUILD_TIME_PROPERTIES = "/build-time-list";
     private static final String INIT_CONTAINER_CONDITION_FORMAT = "$(env | grep %s | grep -q false) && exit 0; %s";
 
     private static final String QUARKUS_KUBERNETES_NAME = "quarkus.kubernetes.name";
@@ -76,11 +82,13 @@ public class HelmProcessor {
     private static final String QUARKUS_CONTAINER_IMAGE_NAME = "quarkus.container-image.name";
     private static final String SERVICE_NAME_PLACEHOLDER = "::service-name";
     private static final String SERVICE_PORT_PLACEHOLDER = "::service-port";
+    private static final String QUARKUS_PREFIX = "quarkus.";
+    private static final String QUARKUS_ENV_PREFIX = "QUARKUS_";
     private static final String SPLIT = ":";
     private static final String PROPERTIES_CONFIG_SOURCE = "PropertiesConfigSource";
     private static final String YAML_CONFIG_SOURCE = "YamlConfigSource";
-    // Lazy loaded when calling `isBuildTimeProperty(xxx)`.
-    private static Set<String> buildProperties;
+    private static final String ENV_CONFIG_SOURCE = "EnvConfigSource";
+    private static final String SYSTEM_PROPERTIES_CONFIG_SOURCE = "SysPropConfigSource";
 
     @BuildStep(onlyIf = { HelmEnabled.class, IsNormal.class })
     void mapSystemPropertiesIfEnabled(Capabilities capabilities, ApplicationInfoBuildItem info, HelmChartConfig helmConfig,
@@ -200,9 +208,9 @@ public class HelmProcessor {
         validate(config);
         Project project = (Project) dekorateOutput.getProject();
 
-        Set<String> enabledDeploymentTargets = kubernetesDeploymentTargets.getEntriesSortedByPriority().stream()
+        List<String> enabledDeploymentTargets = kubernetesDeploymentTargets.getEntriesSortedByPriority().stream()
                 .map(DeploymentTargetEntry::getName)
-                .collect(Collectors.toSet());
+                .collect(Collectors.toList());
 
         // Deduct folders
         Path inputFolder = getInputDirectory(config, project);
@@ -213,15 +221,16 @@ public class HelmProcessor {
         final Map<String, Map<String, byte[]>> deploymentTargets = toDeploymentTargets(generatedResources,
                 enabledDeploymentTargets);
 
-        // Deduct deployment target to push
-        String deploymentTargetToPush = deductDeploymentTarget(config, deploymentTargets);
+        // Deduct deployment targets to push by Helm repository
+        Map<String, HelmRepository> repositoriesToPush = getRepositoriesToPush(config);
+        Map<String, List<String>> deploymentTargetsToPush = deductDeploymentTargetsToPush(repositoriesToPush,
+                deploymentTargets);
 
-        List<HelmChartBuildItem> helmCharts = new ArrayList<>();
         // separate generated helm charts into the deployment targets
+        List<Callable<GeneratedHelmChart>> tasks = new ArrayList<>();
         for (Map.Entry<String, Map<String, byte[]>> filesInDeploymentTarget : deploymentTargets.entrySet()) {
             String deploymentTarget = filesInDeploymentTarget.getKey();
             Path chartOutputFolder = outputFolder.resolve(deploymentTarget);
-            deleteOutputHelmFolderIfExists(chartOutputFolder);
             String name = config.name().orElse(app.getName());
             Path appChartDir = chartOutputFolder.resolve(name);
             List<AdditionalHelmTemplateBuildItem> additionalHelmTemplateBuildItemsForTarget = additionalHelmTemplateBuildItems
@@ -243,32 +252,85 @@ public class HelmProcessor {
                     .collect(Collectors.toMap(AdditionalHelmCRDBuildItem::getName,
                             AdditionalHelmCRDBuildItem::getContent));
 
-            Map<String, String> generated = helmWriter.writeHelmFiles(
-                    name,
-                    project,
-                    config,
-                    getConfigReferencesFromSession(deploymentTarget, dekorateOutput, app.getName()),
-                    inputFolder,
-                    chartOutputFolder,
-                    filesInDeploymentTarget.getValue(),
-                    additionalTemplates,
-                    additionalCRDs,
-                    replacedResources);
-
-            if (!generated.isEmpty()) {
-                helmCharts.add(read(appChartDir));
+            // The session is not thread-safe, so the config references are collected before generating the charts
+            List<ConfigReference> configReferences = getConfigReferencesFromSession(deploymentTarget, dekorateOutput,
+                    app.getName());
+
+            tasks.add(() -> {
+                String inputsDigest = null;
+                Optional<HelmChartManifest> manifest = Optional.empty();
+                if (isIncremental(config)) {
+                    inputsDigest = getInputsDigest(name, project, config, configReferences, inputFolder,
+                            filesInDeploymentTarget.getValue(), additionalTemplates, additionalCRDs, replacedResources);
+                    manifest = HelmChartManifest.read(chartOutputFolder);
+                }
+
+                Map<String, String> generated;
+                HelmChartBuildItem.Builder chartModel = null;
+                if (manifest.isPresent() && manifest.get().isUpToDate(inputsDigest)) {
+                    LOGGER.infof("Helm Chart \"%s\" for the deployment target '%s' is up to date", name, deploymentTarget);
+                    generated = manifest.get().getArtifacts();
+                } else {
+                    deleteOutputHelmFolderIfExists(chartOutputFolder);
+                    chartModel = HelmChartBuildItem.builder().withDeploymentTarget(deploymentTarget);
+                    generated = helmWriter.writeHelmFiles(
+                            name,
+                            project,
+                            config,
+                            configReferences,
+                            inputFolder,
+                            chartOutputFolder,
+                            filesInDeploymentTarget.getValue(),
+                            additionalTemplates,
+                            additionalCRDs,
+                            replacedResources,
+                            chartModel);
+
+                    if (isIncremental(config) && !generated.isEmpty()) {
+                        writeManifest(chartOutputFolder, inputsDigest, generated);
+                    }
+                }
+
+                HelmChartBuildItem chart = null;
+                if (!generated.isEmpty()) {
+                    // only the charts that were not generated in this build are read from the file system
+                    chart = chartModel != null ? chartModel.build() : read(appChartDir);
+                }
+
+                return new GeneratedHelmChart(deploymentTarget, generated, chart);
+            });
+        }
+
+        int parallelism = config.parallelism().orElse(Runtime.getRuntime().availableProcessors());
+        List<HelmChartBuildItem> helmCharts = new ArrayList<>();
+        List<HelmChartPush> pushes = new ArrayList<>();
+        // the results keep the order of the deployment targets, regardless of which chart was generated first
+        for (GeneratedHelmChart generatedHelmChart : ConcurrencyUtils.invokeAll("helm-chart-generator", parallelism,
+                tasks)) {
+            if (generatedHelmChart.chart() != null) {
+                helmCharts.add(generatedHelmChart.chart());
             }
 
-            // Push to Helm repository if enabled
-            if (config.repository().push() && deploymentTargetToPush.equals(deploymentTarget)) {
-                String tarball = generated.keySet().stream()
-                        .filter(file -> file.endsWith(config.extension()))
-                        .findFirst()
-                        .orElseThrow(() -> new RuntimeException("Couldn't find the tarball file. There should have "
-                                + "been generated when pushing to a Helm repository is enabled."));
-                pushToHelmRepository(new File(tarball), config.repository());
+            for (Map.Entry<String, List<String>> repository : deploymentTargetsToPush.entrySet()) {
+                if (repository.getValue().contains(generatedHelmChart.deploymentTarget())) {
+                    String tarball = generatedHelmChart.files().keySet().stream()
+                            .filter(file -> file.endsWith(config.extension()))
+                            .findFirst()
+                            .orElseThrow(() -> new RuntimeException("Couldn't find the tarball file. There should have "
+                                    + "been generated when pushing to a Helm repository is enabled."));
+                    Chart chart = generatedHelmChart.chart().getChart();
+                    pushes.add(new HelmChartPush(generatedHelmChart.deploymentTarget(), chart.getName(),
+                            chart.getVersion(), new File(tarball), repository.getKey(),
+                            repositoriesToPush.get(repository.getKey())));
+                }
             }
         }
+
+        // Push to Helm repositories if enabled
+        if (!pushes.isEmpty()) {
+            pushToHelmRepositories(pushes, config.pushPolicy(), parallelism);
+        }
+
         return helmCharts;
     }
 
@@ -320,26 +382,34 @@ public class HelmProcessor {
         }
     }
 
-    private String deductDeploymentTarget(HelmChartConfig config, Map<String, Map<String, byte[]>> deploymentTargets) {
-        if (config.repository().push()) {
-            // if enabled, use the deployment target from the user if set
-            if (config.repository().deploymentTarget().isPresent()) {
-                return config.repository().deploymentTarget().get();
-            } else {
-                List<String> deploymentTargetNames = deploymentTargets.keySet().stream().collect(Collectors.toList());
-                if (deploymentTargetNames.size() == 1) {
-                    return deploymentTargetNames.get(0);
-                } else {
-                    throw new IllegalStateException("Multiple deployment target found: '"
-                            + deploymentTargetNames.stream().collect(
-                                    Collectors.joining(", "))
-                            + "'. To push the Helm Chart to the repository, "
-                            + "you need to select only one using the property `quarkus.helm.repository.deployment-target`");
+    /**
+     * @return the deployment targets to push by the configuration prefix of the Helm repository.
+     */
+    private Map<String, List<String>> deductDeploymentTargetsToPush(Map<String, HelmRepository> repositoriesToPush,
+            Map<String, Map<String, byte[]>> deploymentTargets) {
+        Map<String, List<String>> deploymentTargetsToPush = new LinkedHashMap<>();
+        for (Map.Entry<String, HelmRepository> repository : repositoriesToPush.entrySet()) {
+            // if enabled, use the deployment targets from the user if set
+            List<String> deploymentTargetNames = repository.getValue().deploymentTarget()
+                    .orElseGet(() -> new ArrayList<>(deploymentTargets.keySet()));
+            if (repository.getValue().deploymentTarget().isEmpty() && deploymentTargetNames.size() > 1) {
+                throw new IllegalStateException("Multiple deployment target found: '"
+                        + String.join(", ", deploymentTargetNames)
+                        + "'. To push the Helm Chart to the repository, "
+                        + "you need to select them using the property `" + repository.getKey() + ".deployment-target`");
+            }
+
+            for (String deploymentTargetName : deploymentTargetNames) {
+                if (!deploymentTargets.containsKey(deploymentTargetName)) {
+                    LOGGER.warnf("The deployment target '%s' to push to the Helm repository configured by `%s` was not "
+                            + "generated, so it's ignored", deploymentTargetName, repository.getKey());
                 }
             }
+
+            deploymentTargetsToPush.put(repository.getKey(), deploymentTargetNames);
         }
 
-        return null;
+        return deploymentTargetsToPush;
     }
 
     private void deleteOutputHelmFolderIfExists(Path outputFolder) {
@@ -350,6 +420,102 @@ public class HelmProcessor {
         }
     }
 
+    private String getInputsDigest(String name, Project project, HelmChartConfig helmConfig,
+            List<ConfigReference> configReferences, Path inputFolder, Map<String, byte[]> generatedFiles,
+            Map<String, byte[]> additionalTemplates, Map<String, byte[]> additionalCRDs,
+            List<AdditionalHelmTemplateBuildItem.ReplacedResource> replacedResources) {
+        try {
+            HelmChartManifest.Inputs inputs = HelmChartManifest.inputs()
+                    .add("name", name)
+                    .add("version", project.getBuildInfo().getVersion())
+                    .addAll("generated", generatedFiles)
+                    .addAll("additional-templates", additionalTemplates)
+                    .addAll("additional-crds", additionalCRDs)
+                    .addConfigReferences("config-references", configReferences)
+                    .addDirectory("input", inputFolder);
+
+            for (AdditionalHelmTemplateBuildItem.ReplacedResource replacedResource : replacedResources) {
+                inputs.add("replaced", replacedResource.kind() + "/" + replacedResource.name());
+            }
+
+            // all the properties of the application, and not only the Helm ones, because other extensions like
+            // Kubernetes also use them to generate the resources and the values. The environment variables and the system
+            // properties are only used when they configure Quarkus, otherwise any change of the environment would
+            // generate the charts again.
+            Config config = ConfigProvider.getConfig();
+            List<String> properties = new ArrayList<>();
+            for (String propName : config.getPropertyNames()) {
+                if (isChartInput(propName, config.getConfigValue(propName).getSourceName())) {
+                    properties.add(propName);
+                }
+            }
+
+            Collections.sort(properties);
+            for (String propName : properties) {
+                inputs.add(propName, config.getConfigValue(propName).getValue());
+            }
+
+            // a new version of the extension can generate a different chart from the same inputs
+            inputs.add("extension-version", HelmProcessor.class.getPackage().getImplementationVersion());
+            inputs.add("extension", getExtensionDigest());
+
+            // the notes template can be provided from the classpath
+            if (StringUtils.isNotEmpty(helmConfig.notes())) {
+                try (InputStream notes = Thread.currentThread().getContextClassLoader()
+                        .getResourceAsStream(helmConfig.notes())) {
+                    inputs.add("notes", notes == null ? null : notes.readAllBytes());
+                }
+            }
+
+            return inputs.digest();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to compute the inputs of the Helm Chart " + name, e);
+        }
+    }
+
+    /**
+     * When the system properties are mapped, the chart also depends on the system properties and the environment
+     * variables that are referenced by the properties, so it's always generated again.
+     */
+    private static boolean isIncremental(HelmChartConfig config) {
+        return config.incremental() && !config.mapSystemProperties();
+    }
+
+    private static boolean isChartInput(String propName, String sourceName) {
+        if (StringUtils.isEmpty(sourceName)
+                || !(sourceName.startsWith(ENV_CONFIG_SOURCE) || sourceName.startsWith(SYSTEM_PROPERTIES_CONFIG_SOURCE))) {
+            return true;
+        }
+
+        return propName.startsWith(QUARKUS_PREFIX) || propName.startsWith(QUARKUS_ENV_PREFIX);
+    }
+
+    /**
+     * @return the digest of the jar of the extension, so the snapshot versions are also taken into account.
+     */
+    private static String getExtensionDigest() throws IOException {
+        try {
+            Path location = Paths.get(HelmProcessor.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (Files.isRegularFile(location)) {
+                return HelmChartManifest.digestOf(location);
+            }
+
+            return HelmChartManifest.inputs().addDirectory("classes", location).digest();
+        } catch (URISyntaxException | RuntimeException e) {
+            LOGGER.debugf("Can't find the location of the Helm extension. Caused by: %s", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeManifest(Path chartOutputFolder, String inputsDigest, Map<String, String> generated) {
+        try {
+            HelmChartManifest.write(chartOutputFolder, inputsDigest, generated);
+        } catch (IOException e) {
+            LOGGER.warnf("Could not write the Helm Chart manifest at '%s'. Caused by: %s", chartOutputFolder,
+                    e.getMessage());
+        }
+    }
+
     private Path getInputDirectory(HelmChartConfig config, Project project) {
         Path path = Paths.get(config.inputDirectory());
         if (!path.isAbsolute()) {
@@ -367,7 +533,7 @@ public class HelmProcessor {
     }
 
     private Map<String, Map<String, byte[]>> toDeploymentTargets(
-            List<GeneratedKubernetesResourceBuildItem> generatedResources, Set<String> enabledDeploymentTargets) {
+            List<GeneratedKubernetesResourceBuildItem> generatedResources, List<String> enabledDeploymentTargets) {
         Map<String, Map<String, byte[]>> resourceByDeploymentTarget = new HashMap<>();
         for (GeneratedKubernetesResourceBuildItem generatedResource : generatedResources) {
             if (generatedResource.getName().toLowerCase(Locale.ROOT).endsWith(".json")) {
@@ -390,7 +556,15 @@ public class HelmProcessor {
             resourceByDeploymentTarget.put(deploymentTarget, resourcesByName);
         }
 
-        return resourceByDeploymentTarget;
+        // sort the deployment targets by priority
+        Map<String, Map<String, byte[]>> sortedResourceByDeploymentTarget = new LinkedHashMap<>();
+        for (String deploymentTarget : enabledDeploymentTargets) {
+            if (resourceByDeploymentTarget.containsKey(deploymentTarget)) {
+                sortedResourceByDeploymentTarget.put(deploymentTarget, resourceByDeploymentTarget.get(deploymentTarget));
+            }
+        }
+
+        return sortedResourceByDeploymentTarget;
     }
 
     private String defaultString(Optional<String> value, String defaultStr) {
@@ -407,17 +581,19 @@ public class HelmProcessor {
             return property;
         }
 
+        return mapSystemProperties(deploymentName, decorators, property, getSystemProperties(property),
+                propertiesFromConfigSource);
+    }
+
+    private String mapSystemProperties(String deploymentName, BuildProducer<DecoratorBuildItem> decorators, String property,
+            List<SystemProperty> systemProperties, Map<String, String> propertiesFromConfigSource) {
         String lastPropertyValue = property;
-        for (String systemProperty : getSystemProperties(property)) {
-            String defaultValue = EMPTY;
-            if (systemProperty.contains(SPLIT)) {
-                int splitPosition = systemProperty.indexOf(SPLIT);
-                defaultValue = systemProperty.substring(splitPosition + SPLIT.length());
-                systemProperty = systemProperty.substring(0, splitPosition);
-
-                if (hasSystemProperties(defaultValue)) {
-                    defaultValue = mapProperty(deploymentName, decorators, defaultValue, propertiesFromConfigSource);
-                }
+        for (SystemProperty parsedSystemProperty : systemProperties) {
+            String systemProperty = parsedSystemProperty.getName();
+            String defaultValue = parsedSystemProperty.getDefaultValue().orElse(EMPTY);
+            if (!parsedSystemProperty.getDefaultValueProperties().isEmpty()) {
+                defaultValue = mapSystemProperties(deploymentName, decorators, defaultValue,
+                        parsedSystemProperty.getDefaultValueProperties(), propertiesFromConfigSource);
             }
 
             // Incorporate if and only if the system property name is valid in Helm
@@ -460,23 +636,7 @@ public class HelmProcessor {
     }
 
     private boolean isBuildTimeProperty(String name) {
-        if (buildProperties == null) {
-            buildProperties = new HashSet<>();
-            try {
-                Scanner scanner = new Scanner(HelmProcessor.class.getResourceAsStream(BUILD_TIME_PROPERTIES));
-                while (scanner.hasNextLine()) {
-                    buildProperties.add(scanner.nextLine());
-                }
-            } catch (Exception e) {
-                LOGGER.debugf("Can't read the build time properties file at '%s'. Caused by: %s",
-                        BUILD_TIME_PROPERTIES,
-                        e.getMessage());
-            }
-        }
-
-        return buildProperties.stream().anyMatch(build -> name.matches(build) // It's a regular expression
-                || (build.endsWith(".") && name.startsWith(build)) // contains with
-                || name.equals(build)); // or it's equal to
+        return BuildTimePropertiesMatcher.getDefault().matches(name);
     }
 
     private List<ConfigReference> getConfigReferencesFromSession(String deploymentTarget,
@@ -522,7 +682,9 @@ public class HelmProcessor {
             Chart chart = Serialization.unmarshal(Files.readString(chartYamlPath), Chart.class);
             @SuppressWarnings("unchecked")
             Map<String, Map<String, Object>> values = Serialization.unmarshal(Files.readString(valuesYamlPath), Map.class);
-            ValuesSchema valuesSchema = Serialization.unmarshal(Files.readString(valuesSchemaPath), ValuesSchema.class);
+            ValuesSchema valuesSchema = Files.exists(valuesSchemaPath)
+                    ? Serialization.unmarshal(Files.readString(valuesSchemaPath), ValuesSchema.class)
+                    : null;
 
             Map<String, String> templates = new HashMap<>();
             if (Files.isDirectory(templatesDir)) {
@@ -558,4 +720,7 @@ public class HelmProcessor {
         }
     }
 
+    private record GeneratedHelmChart(String deploymentTarget, Map<String, String> files, HelmChartBuildItem chart) {
+    }
+
 }
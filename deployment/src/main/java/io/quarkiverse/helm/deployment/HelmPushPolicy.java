@@ -0,0 +1,12 @@
+package io.quarkiverse.helm.deployment;
+
+public enum HelmPushPolicy {
+    /**
+     * Once an upload fails, the uploads that are not started yet are skipped, and the build fails.
+     */
+    FAIL_FAST,
+    /**
+     * All the uploads are performed, and the failed uploads are only reported.
+     */
+    BEST_EFFORT
+}
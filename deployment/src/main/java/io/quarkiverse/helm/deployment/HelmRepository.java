@@ -1,5 +1,7 @@
 package io.quarkiverse.helm.deployment;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 
 import org.apache.commons.lang3.StringUtils;
@@ -14,18 +16,20 @@ public interface HelmRepository {
     boolean push();
 
     /**
-     * The deployment target to push. Options are: `kubernetes`, `openshift`, `knative`...
+     * The deployment targets to push. Options are: `kubernetes`, `openshift`, `knative`... If not set and there is only
+     * one deployment target, it will push the Helm chart of this deployment target.
      */
     @WithDefault("${quarkus.kubernetes.deployment-target}")
-    Optional<String> deploymentTarget();
+    Optional<List<String>> deploymentTarget();
 
     /**
-     * The Helm repository type. Options are: `CHARTMUSEUM`, `ARTIFACTORY`, and `NEXUS`.
+     * The Helm repository type. Options are: `CHARTMUSEUM`, `ARTIFACTORY`, `NEXUS`, and `OCI`.
      */
     Optional<HelmRepositoryType> type();
 
     /**
-     * The Helm repository URL.
+     * The Helm repository URL. For OCI registries, the URL is the registry and namespace in which the charts are
+     * pushed, for example `oci://registry.example.com/charts`. The `oci://` scheme uses HTTPS.
      */
     Optional<String> url();
 
@@ -39,6 +43,40 @@ public interface HelmRepository {
      */
     Optional<String> password();
 
+    /**
+     * The timeout to connect to the Helm repository.
+     */
+    @WithDefault("PT10S")
+    Duration connectTimeout();
+
+    /**
+     * The timeout to upload the Helm chart to the Helm repository, once connected.
+     */
+    @WithDefault("PT5M")
+    Duration requestTimeout();
+
+    /**
+     * The number of times the upload is retried when the connection fails or the Helm repository replies with a
+     * transient error (`429`, `502`, `503` or `504`). Use `0` to disable the retries.
+     */
+    @WithDefault("3")
+    int maxRetries();
+
+    /**
+     * The time to wait before the first retry. It is doubled after every retry, up to 30 seconds.
+     */
+    @WithDefault("PT1S")
+    Duration retryBackoff();
+
+    /**
+     * If enabled, the digest of the Helm chart is compared with the digest of the same chart version in the Helm
+     * repository before uploading it, and the upload is skipped when both are the same. The digest is taken from the chart
+     * API of ChartMuseum, the `X-Checksum-Sha256` header of Artifactory, or the `index.yaml` file of Nexus. If it can't be
+     * retrieved, the Helm chart is uploaded.
+     */
+    @WithDefault("false")
+    boolean skipIfUnchanged();
+
     default String getUsername() {
         return username().filter(StringUtils::isNotEmpty).orElse(null);
     }
@@ -3,5 +3,6 @@ package io.quarkiverse.helm.deployment;
 public enum HelmRepositoryType {
     CHARTMUSEUM,
     ARTIFACTORY,
-    NEXUS
+    NEXUS,
+    OCI
 }
@@ -1,18 +1,13 @@
 package io.quarkiverse.helm.deployment;
 
 import static io.quarkiverse.helm.deployment.utils.HelmConfigUtils.deductProperty;
+import static io.quarkiverse.helm.deployment.utils.HelmConfigUtils.isPushEnabled;
 import static io.quarkiverse.helm.deployment.utils.HelmTarArchiver.createTarBall;
 import static io.quarkiverse.helm.deployment.utils.MapUtils.toMultiValueUnsortedMap;
 import static io.quarkiverse.helm.deployment.utils.MapUtils.toPlainMap;
-import static io.quarkiverse.helm.deployment.utils.ValuesSchemaUtils.createSchema;
 import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.EMPTY;
-import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.END_EXPRESSION_TOKEN;
-import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.END_TAG;
 import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.QUOTE_CONVERSION;
 import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.SEPARATOR_QUOTES;
-import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.SEPARATOR_TOKEN;
-import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.START_EXPRESSION_TOKEN;
-import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.START_TAG;
 import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.read;
 import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.readAndSet;
 import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.set;
@@ -23,13 +18,17 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -38,30 +37,42 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import io.dekorate.ConfigReference;
 import io.dekorate.Logger;
 import io.dekorate.LoggerFactory;
 import io.dekorate.project.Project;
 import io.dekorate.utils.Exec;
-import io.dekorate.utils.Maps;
 import io.dekorate.utils.Serialization;
 import io.github.yamlpath.YamlExpressionParser;
 import io.github.yamlpath.YamlPath;
 import io.quarkiverse.helm.deployment.utils.FileUtils;
-import io.quarkiverse.helm.deployment.utils.MapUtils;
+import io.quarkiverse.helm.deployment.utils.HelmGenerationReport;
+import io.quarkiverse.helm.deployment.utils.HelmTarArchiver;
+import io.quarkiverse.helm.deployment.utils.IndexedYamlExpressionParser;
+import io.quarkiverse.helm.deployment.utils.KnownPatternsRewriter;
+import io.quarkiverse.helm.deployment.utils.MapMerger;
 import io.quarkiverse.helm.deployment.utils.ReadmeBuilder;
 import io.quarkiverse.helm.deployment.utils.ValuesHolder;
+import io.quarkiverse.helm.deployment.utils.ValuesSchemaUtils;
+import io.quarkiverse.helm.deployment.utils.ValuesTree;
+import io.quarkiverse.helm.deployment.utils.YamlPathExpression;
 import io.quarkiverse.helm.model.Chart;
 import io.quarkiverse.helm.model.HelmDependency;
 import io.quarkiverse.helm.model.Maintainer;
+import io.quarkiverse.helm.model.ValuesSchema;
 import io.quarkiverse.helm.spi.AdditionalHelmTemplateBuildItem;
+import io.quarkiverse.helm.spi.HelmChartBuildItem;
 
 public class QuarkusHelmWriterSessionListener {
     private static final String YAML = ".yaml";
@@ -83,8 +94,10 @@ public class QuarkusHelmWriterSessionListener {
     private static final String TEMPLATE_FUNCTION_START_TAG = "{{- define";
     private static final String TEMPLATE_FUNCTION_END_TAG = "{{- end }}";
     private static final String HELM_HELPER_PREFIX = "_";
-    private static final boolean APPEND = true;
     private static final Logger LOGGER = LoggerFactory.getLogger();
+    private static final ObjectWriter YAML_WRITER = Serialization.yamlMapper().writer()
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final ObjectWriter JSON_WRITER = Serialization.jsonMapper().writerWithDefaultPrettyPrinter();
 
     /**
      * Needs to be public in order to be called from outside the session context.
@@ -101,29 +114,81 @@ public class QuarkusHelmWriterSessionListener {
             Map<String, byte[]> additionalTemplates,
             Map<String, byte[]> additionalCRDs,
             List<AdditionalHelmTemplateBuildItem.ReplacedResource> replacedResources) {
+        return writeHelmFiles(name, project, helmConfig, valueReferencesFromDecorators, inputDir, outputDir,
+                generatedFiles, additionalTemplates, additionalCRDs, replacedResources, HelmChartBuildItem.builder());
+    }
+
+    /**
+     * Needs to be public in order to be called from outside the session context.
+     *
+     * @param chartModel the builder that collects the chart, values, schema, templates, notes and readme while they are
+     *        written, so the chart doesn't need to be read again from the file system.
+     * @return the list of the Helm generated files.
+     */
+    public Map<String, String> writeHelmFiles(String name,
+            Project project,
+            HelmChartConfig helmConfig,
+            List<ConfigReference> valueReferencesFromDecorators,
+            Path inputDir,
+            Path outputDir,
+            Map<String, byte[]> generatedFiles,
+            Map<String, byte[]> additionalTemplates,
+            Map<String, byte[]> additionalCRDs,
+            List<AdditionalHelmTemplateBuildItem.ReplacedResource> replacedResources,
+            HelmChartBuildItem.Builder chartModel) {
         Map<String, String> artifacts = new HashMap<>();
         if (helmConfig.enabled()) {
 
             try {
                 LOGGER.info(String.format("Creating Helm Chart \"%s\"", name));
-                ValuesHolder values = populateValuesFromConfig(helmConfig, inputDir);
-                List<Map<Object, Object>> resources = populateValuesFromConfigReferences(helmConfig, generatedFiles, values,
-                        valueReferencesFromDecorators);
-                artifacts.putAll(processTemplates(name, helmConfig, inputDir, outputDir, resources, additionalTemplates,
-                        replacedResources));
-                artifacts.putAll(createChartYaml(name, helmConfig, project, inputDir, outputDir));
-                artifacts.putAll(createValuesYaml(name, helmConfig, inputDir, outputDir, values));
+                HelmGenerationReport report = new HelmGenerationReport(name);
+                ValuesHolder values = report.measure("values-from-config",
+                        () -> populateValuesFromConfig(helmConfig, inputDir));
+                // the YAMLPath expressions compiled by path, that are only kept while this chart is generated
+                Map<String, YamlPathExpression> expressions = new HashMap<>();
+                List<Map<Object, Object>> resources = report.measure("value-references",
+                        () -> populateValuesFromConfigReferences(helmConfig, generatedFiles, values,
+                                valueReferencesFromDecorators, expressions));
+                // the content of the templates by file name, including the notes
+                Map<String, String> templateContents = new HashMap<>();
+                // the content of the files that were entirely written from memory, as written, to package them without
+                // reading them again
+                Map<Path, byte[]> writtenFiles = new HashMap<>();
+                artifacts.putAll(report.measureFiles("templates",
+                        () -> processTemplates(name, helmConfig, inputDir, outputDir, resources, additionalTemplates,
+                                replacedResources, templateContents, writtenFiles, expressions)));
+                artifacts.putAll(report.measureFiles("chart-yaml",
+                        () -> createChartYaml(name, helmConfig, project, inputDir, outputDir, chartModel, writtenFiles)));
+                artifacts.putAll(report.measureFiles("values-yaml",
+                        () -> createValuesYaml(name, helmConfig, inputDir, outputDir, values, chartModel, writtenFiles)));
+                artifacts.putAll(report.measureFiles("values-schema",
+                        () -> createValuesSchema(name, helmConfig, inputDir, outputDir, values, chartModel,
+                                writtenFiles)));
+                artifacts.putAll(report.measureFiles("readme",
+                        () -> createReadme(name, helmConfig, inputDir, outputDir, values, chartModel, writtenFiles)));
 
                 // To follow Helm file structure standards:
-                artifacts.putAll(createEmptyChartFolder(name, outputDir));
-                artifacts.putAll(addNotesIntoTemplatesFolder(name, helmConfig, inputDir, outputDir));
-                artifacts.putAll(addAdditionalResources(name, inputDir, outputDir));
-                artifacts.putAll(addAdditionalCRDs(name, outputDir, additionalCRDs));
+                artifacts.putAll(report.measureFiles("additional-files", () -> {
+                    Map<String, String> additionalFiles = new HashMap<>();
+                    additionalFiles.putAll(createEmptyChartFolder(name, outputDir));
+                    additionalFiles.putAll(addNotesIntoTemplatesFolder(name, helmConfig, inputDir, outputDir,
+                            templateContents, chartModel, writtenFiles));
+                    additionalFiles.putAll(addAdditionalResources(name, inputDir, outputDir));
+                    additionalFiles.putAll(addAdditionalCRDs(name, outputDir, additionalCRDs, writtenFiles));
+                    return additionalFiles;
+                }));
+                chartModel.withTemplates(templateContents);
 
                 // Final step: packaging
-                if (helmConfig.createTarFile() || helmConfig.repository().push()) {
-                    fetchDependencies(name, helmConfig, outputDir);
-                    artifacts.putAll(createTarball(name, helmConfig, project, outputDir, artifacts));
+                if (helmConfig.createTarFile() || isPushEnabled(helmConfig)) {
+                    artifacts.putAll(report.measureFiles("dependencies",
+                            () -> fetchDependencies(name, helmConfig, outputDir)));
+                    artifacts.putAll(report.measureFiles("tarball",
+                            () -> createTarball(name, helmConfig, project, outputDir, artifacts, writtenFiles)));
+                }
+
+                if (helmConfig.generationReport()) {
+                    report.write(outputDir);
                 }
 
             } catch (IOException e) {
@@ -150,8 +215,8 @@ public class QuarkusHelmWriterSessionListener {
         return artifacts;
     }
 
-    private Map<String, String> addAdditionalCRDs(String name, Path outputDir, Map<String, byte[]> additionalCRDs)
-            throws IOException {
+    private Map<String, String> addAdditionalCRDs(String name, Path outputDir, Map<String, byte[]> additionalCRDs,
+            Map<Path, byte[]> writtenFiles) throws IOException {
         if (additionalCRDs == null || additionalCRDs.isEmpty()) {
             return Collections.emptyMap();
         }
@@ -162,7 +227,7 @@ public class QuarkusHelmWriterSessionListener {
         Map<String, String> artifacts = new HashMap<>();
         for (Map.Entry<String, byte[]> entry : additionalCRDs.entrySet()) {
             Path destination = crdDir.resolve(entry.getKey());
-            writeFile(new String(entry.getValue()), destination);
+            writeFile(new String(entry.getValue(), StandardCharsets.UTF_8), destination, writtenFiles);
             artifacts.put(destination.toString(), EMPTY);
         }
 
@@ -188,25 +253,46 @@ public class QuarkusHelmWriterSessionListener {
         return Collections.singletonMap(destination.toString(), EMPTY);
     }
 
-    private void fetchDependencies(String name, HelmChartConfig helmConfig, Path outputDir) {
-        if (helmConfig.dependencies() != null && !helmConfig.dependencies().isEmpty()) {
-            Path chartFolder = getChartOutputDir(name, outputDir);
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            boolean success = Exec.inPath(chartFolder)
-                    .redirectingOutput(out)
-                    .commands("helm", "dependency", "build");
+    private Map<String, String> fetchDependencies(String name, HelmChartConfig helmConfig, Path outputDir)
+            throws IOException {
+        if (helmConfig.dependencies() == null || helmConfig.dependencies().isEmpty()) {
+            return Collections.emptyMap();
+        }
 
-            if (success) {
-                LOGGER.info("Dependencies successfully fetched");
-            } else {
-                throw new RuntimeException("Error fetching Helm dependencies. Cause: " + new String(out.toByteArray()));
-            }
+        Path chartFolder = getChartOutputDir(name, outputDir);
+        List<String> unsupported = HelmDependencyResolver.getUnsupportedRepositories(chartFolder);
+        if (helmConfig.dependencyResolution() == HelmDependencyResolution.NATIVE && unsupported.isEmpty()) {
+            Path cacheDirectory = helmConfig.dependencyCacheDirectory().map(Paths::get)
+                    .orElseGet(HelmDependencyResolver::defaultCacheDirectory);
+            Path chartLock = new HelmDependencyResolver(cacheDirectory, helmConfig.dependencyOffline(),
+                    helmConfig.reproducibleTarFile(),
+                    helmConfig.parallelism().orElse(Runtime.getRuntime().availableProcessors())).resolve(chartFolder);
+            LOGGER.info("Dependencies successfully fetched");
+            return Collections.singletonMap(chartLock.toString(), EMPTY);
+        }
+
+        if (helmConfig.dependencyResolution() == HelmDependencyResolution.NATIVE && helmConfig.dependencyOffline()) {
+            throw new RuntimeException("Error fetching Helm dependencies offline: the repositories " + unsupported
+                    + " are only supported by the `helm` binary. Use `http://`, `https://` or `file://` repositories.");
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean success = Exec.inPath(chartFolder)
+                .redirectingOutput(out)
+                .commands("helm", "dependency", "build");
+
+        if (success) {
+            LOGGER.info("Dependencies successfully fetched");
+        } else {
+            throw new RuntimeException("Error fetching Helm dependencies. Cause: " + new String(out.toByteArray()));
         }
+
+        return Collections.emptyMap();
     }
 
     private Map<String, String> addNotesIntoTemplatesFolder(String name, HelmChartConfig helmConfig, Path inputDir,
-            Path outputDir)
-            throws IOException {
+            Path outputDir, Map<String, String> templateContents, HelmChartBuildItem.Builder chartModel,
+            Map<Path, byte[]> writtenFiles) throws IOException {
         InputStream notesInputStream;
 
         File notesInInputDir = inputDir.resolve(NOTES).toFile();
@@ -214,6 +300,7 @@ public class QuarkusHelmWriterSessionListener {
             notesInputStream = new FileInputStream(notesInInputDir);
         } else {
             if (isEmpty(helmConfig.notes())) {
+                chartModel.withNotes(Optional.empty());
                 return Collections.emptyMap();
             }
 
@@ -224,7 +311,16 @@ public class QuarkusHelmWriterSessionListener {
             throw new RuntimeException("Could not find the notes template file in the classpath at " + helmConfig.notes());
         }
         Path chartOutputDir = getChartOutputDir(name, outputDir).resolve(TEMPLATES).resolve(NOTES);
-        Files.copy(notesInputStream, chartOutputDir);
+        byte[] notes;
+        try (InputStream input = notesInputStream) {
+            notes = input.readAllBytes();
+        }
+
+        Files.write(chartOutputDir, notes);
+        writtenFiles.put(chartOutputDir, notes);
+        String content = new String(notes, StandardCharsets.UTF_8);
+        templateContents.put(NOTES, content);
+        chartModel.withNotes(Optional.of(content));
         return Collections.singletonMap(chartOutputDir.toString(), EMPTY);
     }
 
@@ -241,79 +337,92 @@ public class QuarkusHelmWriterSessionListener {
     }
 
     private Map<String, String> createValuesYaml(String name, HelmChartConfig helmConfig,
-            Path inputDir, Path outputDir, ValuesHolder valuesHolder)
-            throws IOException {
-        Map<String, ValuesHolder.HelmValueHolder> prodValues = valuesHolder.getProdValues();
-        Map<String, Map<String, ValuesHolder.HelmValueHolder>> valuesByProfile = valuesHolder.getValuesByProfile();
+            Path inputDir, Path outputDir, ValuesHolder valuesHolder, HelmChartBuildItem.Builder chartModel,
+            Map<Path, byte[]> writtenFiles) throws IOException {
+        ValuesTree prodValues = valuesHolder.getProdTree();
 
         Map<String, String> artifacts = new HashMap<>();
 
         // first, we process the values in each profile
-        for (Map.Entry<String, Map<String, ValuesHolder.HelmValueHolder>> valuesInProfile : valuesByProfile.entrySet()) {
+        for (Map.Entry<String, ValuesTree> valuesInProfile : valuesHolder.getTreesByProfile().entrySet()) {
             String profile = valuesInProfile.getKey();
-            Map<String, ValuesHolder.HelmValueHolder> values = valuesInProfile.getValue();
-            // Populate the profiled values with the one from prod if the key does not exist
-            for (Map.Entry<String, ValuesHolder.HelmValueHolder> prodValue : prodValues.entrySet()) {
-                if (!values.containsKey(prodValue.getKey())) {
-                    values.put(prodValue.getKey(), prodValue.getValue());
-                }
-            }
+            // The profiled values fall through to the ones from prod if the key does not exist
+            ValuesTree values = valuesInProfile.getValue();
 
             // Create the values.<profile>.yaml file
             artifacts.putAll(writeFileAsYaml(
                     mergeWithFileIfExists(inputDir, VALUES + helmConfig.valuesProfileSeparator() + profile + YAML,
-                            toValuesMap(values)),
+                            values.toMap()),
                     getChartOutputDir(name, outputDir)
-                            .resolve(VALUES + helmConfig.valuesProfileSeparator() + profile + YAML)));
+                            .resolve(VALUES + helmConfig.valuesProfileSeparator() + profile + YAML),
+                    writtenFiles));
         }
 
         // Next, we process the prod profile
-        artifacts.putAll(writeFileAsYaml(toValuesMap(prodValues),
-                getChartOutputDir(name, outputDir).resolve(VALUES + YAML)));
+        Map<String, Object> values = prodValues.toMap();
+        artifacts.putAll(writeModel(values, Serialization.asYaml(values),
+                getChartOutputDir(name, outputDir).resolve(VALUES + YAML), Map.class, chartModel::withValues,
+                writtenFiles));
 
-        // Next, the "values.schema.json" file
+        return artifacts;
+    }
+
+    private Map<String, String> createValuesSchema(String name, HelmChartConfig helmConfig,
+            Path inputDir, Path outputDir, ValuesHolder valuesHolder, HelmChartBuildItem.Builder chartModel,
+            Map<Path, byte[]> writtenFiles) throws IOException {
+        File userSchemaFile = inputDir.resolve(VALUES_SCHEMA).toFile();
         if (helmConfig.createValuesSchemaFile()) {
-            Map<String, Object> schemaAsMap = createSchema(helmConfig, prodValues);
-            artifacts.putAll(
-                    writeFileAsJson(mergeWithFileIfExists(inputDir, VALUES_SCHEMA, MapUtils.toMultiValueSortedMap(schemaAsMap)),
-                            getChartOutputDir(name, outputDir).resolve(VALUES_SCHEMA)));
-        } else {
-            artifacts.putAll(addAdditionalResource(name, outputDir, inputDir.resolve(VALUES_SCHEMA).toFile()));
-        }
+            ValuesSchema schema = ValuesSchemaUtils.createValuesSchema(helmConfig, valuesHolder.getProdTree());
+            Object content = schema;
+            if (userSchemaFile.exists()) {
+                Map<String, Object> merged = mergeWithFileIfExists(inputDir, VALUES_SCHEMA,
+                        Serialization.jsonMapper().convertValue(schema, new TypeReference<Map<String, Object>>() {
+                        }));
+                schema = Serialization.jsonMapper().convertValue(merged, ValuesSchema.class);
+                content = merged;
+            }
 
-        // Next, the "README.md" file
-        if (helmConfig.createReadmeFile()) {
-            String readmeContent = ReadmeBuilder.build(name, helmConfig, prodValues);
-            artifacts.putAll(writeFile(readmeContent, getChartOutputDir(name, outputDir).resolve(README)));
-        } else {
-            artifacts.putAll(addAdditionalResource(name, outputDir, inputDir.resolve(README).toFile()));
+            // the schema is written straight from the model, without serializing it into a string first
+            Path schemaFile = getChartOutputDir(name, outputDir).resolve(VALUES_SCHEMA);
+            try (Writer writer = KnownPatternsRewriter.writer(Files.newBufferedWriter(schemaFile, StandardCharsets.UTF_8))) {
+                JSON_WRITER.writeValue(writer, content);
+            }
+
+            writtenFiles.remove(schemaFile);
+
+            chartModel.withValuesSchema(schema);
+            return Collections.singletonMap(schemaFile.toString(), EMPTY);
         }
 
-        return artifacts;
+        chartModel.withValuesSchema(userSchemaFile.exists()
+                ? Serialization.unmarshal(Files.readString(userSchemaFile.toPath()), ValuesSchema.class)
+                : null);
+        return addAdditionalResource(name, outputDir, userSchemaFile);
     }
 
-    private Map<String, Object> toValuesMap(Map<String, ValuesHolder.HelmValueHolder> holder) {
-        Map<String, Object> values = new HashMap<>();
-        for (Map.Entry<String, ValuesHolder.HelmValueHolder> value : holder.entrySet()) {
-            values.put(value.getKey(), value.getValue().value);
+    private Map<String, String> createReadme(String name, HelmChartConfig helmConfig,
+            Path inputDir, Path outputDir, ValuesHolder valuesHolder, HelmChartBuildItem.Builder chartModel,
+            Map<Path, byte[]> writtenFiles) throws IOException {
+        if (helmConfig.createReadmeFile()) {
+            String readmeContent = ReadmeBuilder.build(name, helmConfig, valuesHolder.getProdTree());
+            chartModel.withReadme(Optional.of(readmeContent));
+            return writeFile(readmeContent, getChartOutputDir(name, outputDir).resolve(README), writtenFiles);
         }
 
-        return MapUtils.toMultiValueSortedMap(values);
+        File userReadmeFile = inputDir.resolve(README).toFile();
+        chartModel.withReadme(userReadmeFile.exists()
+                ? Optional.of(Files.readString(userReadmeFile.toPath()))
+                : Optional.empty());
+        return addAdditionalResource(name, outputDir, userReadmeFile);
     }
 
     private Map<String, Object> mergeWithFileIfExists(Path inputDir, String file, Map<String, Object> valuesAsMultiValueMap) {
         File templateValuesFile = inputDir.resolve(file).toFile();
         if (templateValuesFile.exists()) {
-            Map<String, Object> result = new HashMap<>();
-            Map<String, Object> yaml = Serialization.unmarshal(templateValuesFile,
+            Map<String, Object> userValues = Serialization.unmarshal(templateValuesFile,
                     new TypeReference<Map<String, Object>>() {
                     });
-            result.putAll(yaml);
-            // first, incorporate the properties from the file
-            Maps.merge(valuesAsMultiValueMap, result);
-            // then, merge it with the generated data
-            Maps.merge(result, valuesAsMultiValueMap);
-            return result;
+            return MapMerger.merge(valuesAsMultiValueMap, userValues, MapMerger.ListStrategy.REPLACE, file);
         }
 
         return valuesAsMultiValueMap;
@@ -321,7 +430,7 @@ public class QuarkusHelmWriterSessionListener {
 
     private Map<String, String> createTarball(String name, HelmChartConfig helmConfig, Project project,
             Path outputDir,
-            Map<String, String> artifacts) throws IOException {
+            Map<String, String> artifacts, Map<Path, byte[]> writtenFiles) throws IOException {
 
         File tarballFile = outputDir.resolve(String.format("%s-%s%s.%s",
                 name,
@@ -333,6 +442,12 @@ public class QuarkusHelmWriterSessionListener {
         LOGGER.debug(String.format("Creating Helm configuration Tarball: '%s'", tarballFile));
 
         Path helmSources = getChartOutputDir(name, outputDir);
+        if (helmConfig.reproducibleTarFile()) {
+            HelmTarArchiver.createReproducibleTarBall(tarballFile,
+                    getTarballEntries(name, helmSources, artifacts, writtenFiles), helmConfig.extension(),
+                    helmConfig.compressionLevel().orElse(Deflater.DEFAULT_COMPRESSION), helmConfig.compressionThreads());
+            return Collections.singletonMap(tarballFile.toString(), null);
+        }
 
         List<File> files = new ArrayList<>();
         for (String filePath : artifacts.keySet()) {
@@ -345,11 +460,54 @@ public class QuarkusHelmWriterSessionListener {
         }
 
         createTarBall(tarballFile, helmSources.toFile(), files, helmConfig.extension(),
+                helmConfig.compressionLevel().orElse(Deflater.DEFAULT_COMPRESSION), helmConfig.compressionThreads(),
                 tae -> tae.setName(String.format("%s/%s", name, tae.getName())));
 
         return Collections.singletonMap(tarballFile.toString(), null);
     }
 
+    /**
+     * @return the files of the chart by their path within the tarball. The files that were entirely written from memory
+     *         are added using this content, whereas the folders, the copied files and the streamed templates are read
+     *         from the disk.
+     */
+    private Map<String, HelmTarArchiver.Content> getTarballEntries(String name, Path helmSources,
+            Map<String, String> artifacts, Map<Path, byte[]> writtenFiles) throws IOException {
+        Map<String, HelmTarArchiver.Content> entries = new HashMap<>();
+        for (Map.Entry<String, String> artifact : artifacts.entrySet()) {
+            Path path = Paths.get(artifact.getKey());
+            if (!path.startsWith(helmSources)) {
+                continue;
+            }
+
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                        entries.put(toTarballEntryName(name, helmSources, file), HelmTarArchiver.Content.of(file));
+                    }
+                }
+            } else if (Files.isRegularFile(path)) {
+                byte[] content = writtenFiles.get(path);
+                if (content != null) {
+                    entries.put(toTarballEntryName(name, helmSources, path), HelmTarArchiver.Content.of(content));
+                } else {
+                    entries.put(toTarballEntryName(name, helmSources, path), HelmTarArchiver.Content.of(path));
+                }
+            }
+        }
+
+        return entries;
+    }
+
+    private String toTarballEntryName(String name, Path helmSources, Path file) {
+        StringBuilder entryName = new StringBuilder(name);
+        for (Path segment : helmSources.relativize(file)) {
+            entryName.append('/').append(segment);
+        }
+
+        return entryName.toString();
+    }
+
     private String getVersion(HelmChartConfig helmConfig, Project project) {
         return helmConfig.version().orElse(project.getBuildInfo().getVersion());
     }
@@ -359,91 +517,105 @@ public class QuarkusHelmWriterSessionListener {
             Path outputDir,
             List<Map<Object, Object>> resources,
             Map<String, byte[]> additionalTemplates,
-            List<AdditionalHelmTemplateBuildItem.ReplacedResource> replacedResources) throws IOException {
+            List<AdditionalHelmTemplateBuildItem.ReplacedResource> replacedResources,
+            Map<String, String> templateContents, Map<Path, byte[]> writtenFiles,
+            Map<String, YamlPathExpression> expressions) throws IOException {
 
         Map<String, String> templates = new HashMap<>();
         Path templatesDir = getChartOutputDir(name, outputDir).resolve(TEMPLATES);
         Files.createDirectories(templatesDir);
 
-        Map<String, String> functionsByResource = processUserDefinedTemplates(inputDir, templates, templatesDir);
-        // Split yamls in separated files by kind
+        Map<String, String> functionsByResource = processUserDefinedTemplates(inputDir, templates, templatesDir,
+                templateContents, writtenFiles);
+        // the replaced resources and the if statements are indexed once, so matching a resource doesn't depend on them
+        Set<AdditionalHelmTemplateBuildItem.ReplacedResource> replaced = new HashSet<>(replacedResources);
+        AddIfStatementIndex ifStatements = new AddIfStatementIndex(helmConfig);
+        List<Map<Object, Object>> resourcesToWrite = new ArrayList<>(resources.size());
         for (Map<Object, Object> resource : resources) {
-            String kind = (String) resource.get(KIND);
-
-            if (isReplaced(kind, getNameFromResource(resource), replacedResources)) {
-                continue;
+            if (!isReplaced((String) resource.get(KIND), getNameFromResource(resource), replaced)) {
+                resourcesToWrite.add(resource);
             }
+        }
 
-            // Add user defined expressions
-            if (helmConfig.expressions() != null) {
-                YamlExpressionParser parser = new YamlExpressionParser(Arrays.asList(resource));
-                for (ExpressionConfig expressionConfig : helmConfig.expressions().values()) {
-                    if (expressionConfig.path() != null && expressionConfig.expression() != null) {
-                        readAndSet(parser, expressionConfig.path(), expressionConfig.expression());
-                    }
-                }
-            }
-
-            ensureServiceAccountSubjectNamespaceIsPopulated(resource);
-
-            Path targetFile = templatesDir.resolve(kind.toLowerCase() + YAML);
-            String functions = functionsByResource.get(kind.toLowerCase() + YAML);
+        // Add user defined expressions
+        applyExpressions(resourcesToWrite, helmConfig, expressions);
 
-            // Adapt the values tag to Helm standards:
-            String adaptedString = Serialization.yamlMapper().writeValueAsString(resource);
-            if (functions != null) {
-                adaptedString = functions + System.lineSeparator() + adaptedString;
-            }
-
-            // Add if statements at resource level
-            for (Map.Entry<String, AddIfStatementConfig> addIfStatement : helmConfig.addIfStatement().entrySet()) {
-                AddIfStatementConfig addIfStatementConfig = addIfStatement.getValue();
-                if ((addIfStatementConfig.onResourceKind().isEmpty()
-                        || addIfStatementConfig.onResourceKind().get().equals(kind))
-                        && (addIfStatementConfig.onResourceName().isEmpty()
-                                || addIfStatementConfig.onResourceName().get().equals(getNameFromResource(resource)))) {
-                    String propertyName = addIfStatementConfig.property().orElse(addIfStatement.getKey());
-                    String property = deductProperty(helmConfig, propertyName);
-
-                    adaptedString = String.format(IF_STATEMENT_START_TAG, property)
-                            + System.lineSeparator()
-                            + adaptedString
-                            + System.lineSeparator()
-                            + TEMPLATE_FUNCTION_END_TAG
-                            + System.lineSeparator();
+        // Split yamls in separated files by kind, keeping the file of every kind open until all the resources are written
+        Map<String, TemplateWriter> templateWriters = new HashMap<>();
+        try {
+            for (Map<Object, Object> resource : resourcesToWrite) {
+                String kind = (String) resource.get(KIND);
+
+                ensureServiceAccountSubjectNamespaceIsPopulated(resource);
+
+                String fileName = kind.toLowerCase() + YAML;
+                TemplateWriter templateWriter = templateWriters.get(fileName);
+                if (templateWriter == null) {
+                    Path targetFile = templatesDir.resolve(fileName);
+                    templateWriter = new TemplateWriter(Files.newBufferedWriter(targetFile, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+                    templateWriters.put(fileName, templateWriter);
+                    templates.put(targetFile.toString(), EMPTY);
+                    writtenFiles.remove(targetFile);
                 }
-            }
 
-            adaptedString = applyKnownPatterns(adaptedString);
+                // Add if statements at resource level
+                List<String> ifStatementProperties = ifStatements.getProperties(kind, getNameFromResource(resource));
 
-            writeFile(adaptedString, targetFile);
-            templates.put(targetFile.toString(), adaptedString);
+                writeTemplate(templateWriter, resource, functionsByResource.get(fileName), ifStatementProperties);
+            }
+        } finally {
+            closeAll(templateWriters.values());
         }
 
+        templateWriters.forEach((fileName, templateWriter) -> templateContents.put(fileName, templateWriter.getContent()));
+
         if (!additionalTemplates.isEmpty()) {
             for (Map.Entry<String, byte[]> additionalTemplate : additionalTemplates.entrySet()) {
                 Path targetFile = templatesDir.resolve(additionalTemplate.getKey());
                 String content = new String(additionalTemplate.getValue());
 
-                String processedContent = processAdditionalTemplateContent(content, helmConfig);
-                writeFile(processedContent, targetFile);
+                String processedContent = processAdditionalTemplateContent(content, helmConfig, ifStatements, expressions);
+                writeFile(processedContent, targetFile, writtenFiles);
                 templates.put(targetFile.toString(), processedContent);
+                templateContents.put(additionalTemplate.getKey(), processedContent);
             }
         }
 
         return templates;
     }
 
+    /**
+     * Applies the user-defined expressions to the resources. All the resources share the same parser, and every path
+     * only looks at the resources that match its leading `kind` and `metadata.name` filters.
+     */
+    private static void applyExpressions(List<Map<Object, Object>> resources, HelmChartConfig helmConfig,
+            Map<String, YamlPathExpression> expressions) {
+        if (helmConfig.expressions() == null || helmConfig.expressions().isEmpty() || resources.isEmpty()) {
+            return;
+        }
+
+        YamlExpressionParser parser = new IndexedYamlExpressionParser(resources, expressions);
+        for (ExpressionConfig expressionConfig : helmConfig.expressions().values()) {
+            if (expressionConfig.path() != null && expressionConfig.expression() != null) {
+                readAndSet(parser, expressionConfig.path(), expressionConfig.expression());
+            }
+        }
+    }
+
     /**
      * Processes an additional template by applying user-defined expressions.
      * Supports both plain YAML (parsed via YAMLPath) and Helm templates (string-based replacement).
      *
      * @param content the raw template content
      * @param helmConfig the Helm chart configuration containing expressions
+     * @param ifStatements the if statements to add to the resources
+     * @param expressions the YAMLPath expressions compiled by path
      * @return the processed template content
      * @throws IOException if serialization fails
      */
-    private String processAdditionalTemplateContent(String content, HelmChartConfig helmConfig) throws IOException {
+    private String processAdditionalTemplateContent(String content, HelmChartConfig helmConfig,
+            AddIfStatementIndex ifStatements, Map<String, YamlPathExpression> expressions) throws IOException {
         if (helmConfig.expressions() == null || helmConfig.expressions().isEmpty()) {
             return content;
         }
@@ -459,41 +631,18 @@ public class QuarkusHelmWriterSessionListener {
             return content;
         }
 
+        applyExpressions(resources, helmConfig, expressions);
+
         StringBuilder result = new StringBuilder();
         boolean first = true;
         for (Map<Object, Object> resource : resources) {
-            if (helmConfig.expressions() != null) {
-                YamlExpressionParser parser = new YamlExpressionParser(Arrays.asList(resource));
-                for (ExpressionConfig expressionConfig : helmConfig.expressions().values()) {
-                    if (expressionConfig.path() != null && expressionConfig.expression() != null) {
-                        readAndSet(parser, expressionConfig.path(), expressionConfig.expression());
-                    }
-                }
-            }
-
             ensureServiceAccountSubjectNamespaceIsPopulated(resource);
 
             String kind = (String) resource.get(KIND);
             String adaptedString = Serialization.yamlMapper().writeValueAsString(resource);
 
-            for (Map.Entry<String, AddIfStatementConfig> addIfStatement : helmConfig.addIfStatement().entrySet()) {
-                AddIfStatementConfig addIfStatementConfig = addIfStatement.getValue();
-                if ((addIfStatementConfig.onResourceKind().isEmpty()
-                        || addIfStatementConfig.onResourceKind().get().equals(kind))
-                        && (addIfStatementConfig.onResourceName().isEmpty()
-                                || addIfStatementConfig.onResourceName().get()
-                                        .equals(getNameFromResource(resource)))) {
-                    String propertyName = addIfStatementConfig.property().orElse(addIfStatement.getKey());
-                    String property = deductProperty(helmConfig, propertyName);
-
-                    adaptedString = String.format(IF_STATEMENT_START_TAG, property)
-                            + System.lineSeparator()
-                            + adaptedString
-                            + System.lineSeparator()
-                            + TEMPLATE_FUNCTION_END_TAG
-                            + System.lineSeparator();
-                }
-            }
+            adaptedString = wrapWithIfStatements(adaptedString,
+                    ifStatements.getProperties(kind, getNameFromResource(resource)));
 
             adaptedString = applyKnownPatterns(adaptedString);
 
@@ -669,6 +818,65 @@ public class QuarkusHelmWriterSessionListener {
         }
     }
 
+    /**
+     * Appends the resource to the template file as it is serialized, applying the if statements and the known patterns
+     * on the fly.
+     */
+    private void writeTemplate(TemplateWriter templateWriter, Map<Object, Object> resource, String functions,
+            List<String> ifStatementProperties) throws IOException {
+        try (Writer writer = KnownPatternsRewriter.appendingWriter(templateWriter)) {
+            for (int index = ifStatementProperties.size() - 1; index >= 0; index--) {
+                writer.write(String.format(IF_STATEMENT_START_TAG, ifStatementProperties.get(index)));
+                writer.write(System.lineSeparator());
+            }
+
+            if (functions != null) {
+                writer.write(functions);
+                writer.write(System.lineSeparator());
+            }
+
+            YAML_WRITER.writeValue(writer, resource);
+
+            for (int index = 0; index < ifStatementProperties.size(); index++) {
+                writer.write(System.lineSeparator());
+                writer.write(TEMPLATE_FUNCTION_END_TAG);
+                writer.write(System.lineSeparator());
+            }
+        }
+    }
+
+    private static void closeAll(Collection<? extends Writer> writers) throws IOException {
+        IOException failure = null;
+        for (Writer writer : writers) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private String wrapWithIfStatements(String content, List<String> ifStatementProperties) {
+        for (String property : ifStatementProperties) {
+            content = String.format(IF_STATEMENT_START_TAG, property)
+                    + System.lineSeparator()
+                    + content
+                    + System.lineSeparator()
+                    + TEMPLATE_FUNCTION_END_TAG
+                    + System.lineSeparator();
+        }
+
+        return content;
+    }
+
     private String getNameFromResource(Map<Object, Object> resource) {
         Object metadata = resource.get(METADATA);
         if (metadata != null && metadata instanceof Map) {
@@ -681,13 +889,13 @@ public class QuarkusHelmWriterSessionListener {
         return null;
     }
 
-    boolean isReplaced(String kind, String name,
-            List<AdditionalHelmTemplateBuildItem.ReplacedResource> replacedResources) {
-        return replacedResources.stream()
-                .anyMatch(replaced -> replaced.kind().equals(kind) && replaced.name().equals(name));
+    boolean isReplaced(String kind, String name, Set<AdditionalHelmTemplateBuildItem.ReplacedResource> replacedResources) {
+        return !replacedResources.isEmpty()
+                && replacedResources.contains(new AdditionalHelmTemplateBuildItem.ReplacedResource(kind, name));
     }
 
-    private Map<String, String> processUserDefinedTemplates(Path inputDir, Map<String, String> templates, Path templatesDir)
+    private Map<String, String> processUserDefinedTemplates(Path inputDir, Map<String, String> templates, Path templatesDir,
+            Map<String, String> templateContents, Map<Path, byte[]> writtenFiles)
             throws IOException {
         Map<String, String> functionsByResource = new HashMap<>();
 
@@ -698,8 +906,11 @@ public class QuarkusHelmWriterSessionListener {
                 if (userTemplateFile.getName().startsWith(HELM_HELPER_PREFIX)) {
                     // it's a helper Helm file, include as it is
                     Path output = templatesDir.resolve(userTemplateFile.getName());
-                    Files.copy(new FileInputStream(userTemplateFile), output);
+                    byte[] content = Files.readAllBytes(userTemplateFile.toPath());
+                    Files.write(output, content);
+                    writtenFiles.put(output, content);
                     templates.put(output.toString(), EMPTY);
+                    templateContents.put(userTemplateFile.getName(), new String(content, StandardCharsets.UTF_8));
                 } else {
                     // it's a resource template, let's extract only the template functions and include
                     // it into the generated file later.
@@ -774,7 +985,8 @@ public class QuarkusHelmWriterSessionListener {
     private List<Map<Object, Object>> populateValuesFromConfigReferences(HelmChartConfig helmConfig,
             Map<String, byte[]> generatedFiles,
             ValuesHolder values,
-            List<ConfigReference> valuesReferencesFromDecorators) throws IOException {
+            List<ConfigReference> valuesReferencesFromDecorators,
+            Map<String, YamlPathExpression> expressions) throws IOException {
         List<ConfigReference> valuesReferencesFromUser = helmConfig.values().entrySet().stream()
                 .map(e -> new ConfigReference.Builder(e.getValue().property().orElse(e.getKey()),
                         e.getValue().paths().map(l -> l.toArray(new String[0])).orElse(new String[0]))
@@ -796,7 +1008,8 @@ public class QuarkusHelmWriterSessionListener {
             }
 
             // Read helm expression parsers
-            YamlExpressionParser parser = YamlPath.from(new ByteArrayInputStream(generatedFile.getValue()));
+            YamlExpressionParser parser = new IndexedYamlExpressionParser(
+                    YamlPath.from(new ByteArrayInputStream(generatedFile.getValue())).getResources(), expressions);
 
             // Seen lookup by default values.yaml file.
             Map<String, Object> seen = new HashMap<>();
@@ -825,14 +1038,12 @@ public class QuarkusHelmWriterSessionListener {
                     String environmentProperty = getEnvironmentPropertyName(valueReference);
 
                     // Try to find the value from the current values
-                    Map<String, ValuesHolder.HelmValueHolder> current = values.get(valueReference.getProfile());
-                    for (Map.Entry<String, ValuesHolder.HelmValueHolder> currentValue : current.entrySet()) {
-                        if (currentValue.getKey().endsWith(environmentProperty)) {
-                            // found, we use this value instead of generating an additional envs.xxx=yyy property
-                            valueReferenceProperty = currentValue.getKey();
-                            valueReferenceValue = currentValue.getValue().value;
-                            break;
-                        }
+                    ValuesTree current = values.get(valueReference.getProfile());
+                    ValuesTree.Node currentValue = current != null ? current.findBySuffix(environmentProperty) : null;
+                    if (currentValue != null) {
+                        // found, we use this value instead of generating an additional envs.xxx=yyy property
+                        valueReferenceProperty = currentValue.getProperty();
+                        valueReferenceValue = currentValue.getValue().value;
                     }
 
                     processValueReference(valueReferenceProperty, valueReferenceValue, valueReference, values, parser, seen,
@@ -897,7 +1108,7 @@ public class QuarkusHelmWriterSessionListener {
     }
 
     private Map<String, String> createChartYaml(String name, HelmChartConfig helmConfig, Project project,
-            Path inputDir, Path outputDir)
+            Path inputDir, Path outputDir, HelmChartBuildItem.Builder chartModel, Map<Path, byte[]> writtenFiles)
             throws IOException {
         final Chart chart = new Chart();
         chart.setName(name);
@@ -938,24 +1149,43 @@ public class QuarkusHelmWriterSessionListener {
                     toMultiValueUnsortedMap(Serialization.yamlMapper().readValue(Serialization.asYaml(chart), Map.class)));
         }
 
-        return writeFileAsYaml(chartContent, yml);
+        return writeModel(chartContent, Serialization.asYaml(chartContent), yml, Chart.class, chartModel::withChart,
+                writtenFiles);
     }
 
-    private Map<String, String> writeFileAsYaml(Object data, Path file) throws IOException {
+    private Map<String, String> writeFileAsYaml(Object data, Path file, Map<Path, byte[]> writtenFiles)
+            throws IOException {
         String value = Serialization.asYaml(data);
-        return writeFile(applyKnownPatterns(value), file);
+        return writeFile(applyKnownPatterns(value), file, writtenFiles);
     }
 
-    private Map<String, String> writeFileAsJson(Object data, Path file) throws IOException {
-        String value = Serialization.asJson(data);
-        return writeFile(applyKnownPatterns(value), file);
+    /**
+     * Writes the serialized data and gives the data as it would be read from the written file to the model.
+     */
+    private <T> Map<String, String> writeModel(Object data, String content, Path file, Class<T> type, Consumer<T> model,
+            Map<Path, byte[]> writtenFiles) throws IOException {
+        String value = applyKnownPatterns(content);
+        // the known patterns change how the content is read, for example the quoted strings, so only then the written
+        // content is parsed again
+        model.accept(value.equals(content)
+                ? Serialization.jsonMapper().convertValue(data, type)
+                : Serialization.unmarshal(value, type));
+        return writeFile(value, file, writtenFiles);
     }
 
-    private Map<String, String> writeFile(String value, Path file) throws IOException {
-        try (FileWriter writer = new FileWriter(file.toFile(), APPEND)) {
-            writer.write(value);
-            return Collections.singletonMap(file.toString(), value);
+    /**
+     * Appends the value to the file, and records the written content when the file is entirely written from memory.
+     */
+    private Map<String, String> writeFile(String value, Path file, Map<Path, byte[]> writtenFiles) throws IOException {
+        byte[] content = value.getBytes(StandardCharsets.UTF_8);
+        if (Files.exists(file)) {
+            writtenFiles.remove(file);
+        } else {
+            writtenFiles.put(file, content);
         }
+
+        Files.write(file, content, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return Collections.singletonMap(file.toString(), value);
     }
 
     private Path getChartOutputDir(String name, Path outputDir) {
@@ -977,15 +1207,44 @@ public class QuarkusHelmWriterSessionListener {
     }
 
     private static String applyKnownPatterns(String adaptedString) {
-        adaptedString = adaptedString
-                .replaceAll(Pattern.quote("\"" + START_TAG), START_TAG)
-                .replaceAll(Pattern.quote(END_TAG + "\""), END_TAG)
-                .replaceAll("\"" + START_EXPRESSION_TOKEN, EMPTY)
-                .replaceAll(END_EXPRESSION_TOKEN + "\"", EMPTY)
-                .replaceAll(SEPARATOR_QUOTES, "\"")
-                .replaceAll(SEPARATOR_TOKEN, System.lineSeparator())
-                // replace randomly escape characters that is entered by Jackson readTree method:
-                .replaceAll("\\\\\\n(\\s)*\\\\", EMPTY);
-        return adaptedString;
+        return KnownPatternsRewriter.rewrite(adaptedString);
+    }
+
+    /**
+     * Writes a template file and keeps a copy of its content for the chart model.
+     */
+    private static final class TemplateWriter extends Writer {
+        private final Writer file;
+        private final StringBuilder content = new StringBuilder();
+
+        TemplateWriter(Writer file) {
+            this.file = file;
+        }
+
+        String getContent() {
+            return content.toString();
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            file.write(chars, offset, length);
+            content.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String chars, int offset, int length) throws IOException {
+            file.write(chars, offset, length);
+            content.append(chars, offset, offset + length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            file.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
     }
 }
@@ -0,0 +1,117 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Matches the properties that trigger a full build of a Quarkus application. Every entry of the list is either:
+ *
+ * <ul>
+ * <li>a property name, for example `quarkus.cache.enabled`, that matches the same name,</li>
+ * <li>a prefix that ends with a dot, for example `quarkus.log.`, that matches all the properties that start with it,</li>
+ * <li>or a regular expression, for example `quarkus.datasource.(.+).db-kind`, that matches the whole name.</li>
+ * </ul>
+ *
+ * The names and the prefixes are looked up in hash sets, and all the regular expressions are compiled once into a
+ * single alternation, so matching a property doesn't depend on the number of entries. Instances are immutable and
+ * can be shared between threads.
+ */
+public final class BuildTimePropertiesMatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(BuildTimePropertiesMatcher.class);
+    private static final String BUILD_TIME_PROPERTIES = "/build-time-list";
+    private static final String COMMENT = "#";
+    private static final String PREFIX_END = ".";
+    private static final Pattern REGULAR_EXPRESSION = Pattern.compile("[\\\\\\[\\](){}*+?^$|]");
+
+    private final Set<String> names = new HashSet<>();
+    private final Set<String> prefixes = new HashSet<>();
+    private final Pattern regularExpressions;
+
+    private BuildTimePropertiesMatcher(Collection<String> entries) {
+        List<String> expressions = new ArrayList<>();
+        for (String entry : entries) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith(COMMENT)) {
+                continue;
+            }
+
+            if (trimmed.endsWith(PREFIX_END)) {
+                prefixes.add(trimmed);
+            }
+
+            if (REGULAR_EXPRESSION.matcher(trimmed).find()) {
+                expressions.add(trimmed);
+            } else {
+                names.add(trimmed);
+            }
+        }
+
+        this.regularExpressions = expressions.isEmpty() ? null
+                : Pattern.compile(expressions.stream().map(e -> "(?:" + e + ")").collect(Collectors.joining("|")));
+    }
+
+    /**
+     * @return the matcher of the build time properties that are listed in the `build-time-list` resource. The list is
+     *         only read once.
+     */
+    public static BuildTimePropertiesMatcher getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    public static BuildTimePropertiesMatcher of(Collection<String> entries) {
+        return new BuildTimePropertiesMatcher(entries);
+    }
+
+    public boolean matches(String name) {
+        if (names.contains(name)) {
+            return true;
+        }
+
+        // the prefixes end with a dot, so only the parts of the name that end with a dot can be one of them
+        if (!prefixes.isEmpty()) {
+            int index = name.indexOf(PREFIX_END);
+            while (index >= 0) {
+                if (prefixes.contains(name.substring(0, index + 1))) {
+                    return true;
+                }
+
+                index = name.indexOf(PREFIX_END, index + 1);
+            }
+        }
+
+        return regularExpressions != null && regularExpressions.matcher(name).matches();
+    }
+
+    private static BuildTimePropertiesMatcher load() {
+        List<String> entries = new ArrayList<>();
+        try (InputStream input = BuildTimePropertiesMatcher.class.getResourceAsStream(BUILD_TIME_PROPERTIES);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                entries.add(line);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debugf("Can't read the build time properties file at '%s'. Caused by: %s", BUILD_TIME_PROPERTIES,
+                    e.getMessage());
+        }
+
+        return new BuildTimePropertiesMatcher(entries);
+    }
+
+    private static final class DefaultHolder {
+        private static final BuildTimePropertiesMatcher INSTANCE = load();
+    }
+}
@@ -0,0 +1,103 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class ConcurrencyUtils {
+
+    private ConcurrencyUtils() {
+
+    }
+
+    /**
+     * Runs the tasks using at most `parallelism` threads and returns their results in the same order as the tasks.
+     * The tasks run with the context class loader of the calling thread, so they can still access the application
+     * configuration and resources. If any task fails, the pending tasks are cancelled and the failure is rethrown.
+     * When there is only one task or the parallelism is 1, the tasks run in the calling thread.
+     */
+    public static <T> List<T> invokeAll(String name, int parallelism, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        int threads = Math.min(parallelism, tasks.size());
+        if (threads <= 1) {
+            for (Callable<T> task : tasks) {
+                results.add(call(task));
+            }
+
+            return results;
+        }
+
+        ExecutorService executor = newFixedThreadPool(name, threads);
+        try {
+            List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+
+            return results;
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for " + name + " tasks", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return a fixed thread pool whose daemon threads use the context class loader of the calling thread. The caller
+     *         is responsible for shutting it down.
+     */
+    public static ExecutorService newFixedThreadPool(String name, int threads) {
+        return Executors.newFixedThreadPool(threads,
+                new ContextThreadFactory(name, Thread.currentThread().getContextClassLoader()));
+    }
+
+    private static <T> T call(Callable<T> task) {
+        try {
+            return task.call();
+        } catch (Exception e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        } else if (cause instanceof Error error) {
+            throw error;
+        }
+
+        return new RuntimeException(cause);
+    }
+
+    private static final class ContextThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+        private final String name;
+        private final ClassLoader classLoader;
+
+        ContextThreadFactory(String name, ClassLoader classLoader) {
+            this.name = name;
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        }
+    }
+}
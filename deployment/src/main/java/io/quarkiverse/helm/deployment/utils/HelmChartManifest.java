@@ -0,0 +1,282 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import io.dekorate.ConfigReference;
+import io.dekorate.utils.Serialization;
+
+/**
+ * Manifest that is stored next to the generated Helm chart of a deployment target when the incremental mode is enabled.
+ * It records the digest of all the inputs that were used to generate the chart and the digest of every generated file,
+ * so the next build can decide whether the chart needs to be generated again.
+ */
+public final class HelmChartManifest {
+    public static final String MANIFEST_FILE = ".helm-chart-manifest.yaml";
+
+    private static final String FORMAT_VERSION = "1";
+    private static final String VERSION = "version";
+    private static final String INPUTS = "inputs";
+    private static final String FILES = "files";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Path folder;
+    private final String inputs;
+    private final Map<String, String> files;
+
+    private HelmChartManifest(Path folder, String inputs, Map<String, String> files) {
+        this.folder = folder;
+        this.inputs = inputs;
+        this.files = files;
+    }
+
+    /**
+     * @return the manifest stored in the given folder, or empty if there is none or it can't be read.
+     */
+    public static Optional<HelmChartManifest> read(Path folder) {
+        Path manifestFile = folder.resolve(MANIFEST_FILE);
+        if (!Files.isRegularFile(manifestFile)) {
+            return Optional.empty();
+        }
+
+        try {
+            Map<String, Object> content = Serialization.unmarshal(Files.readString(manifestFile),
+                    new TypeReference<Map<String, Object>>() {
+                    });
+            if (content == null || !FORMAT_VERSION.equals(String.valueOf(content.get(VERSION)))
+                    || !(content.get(INPUTS) instanceof String inputs)
+                    || !(content.get(FILES) instanceof Map<?, ?> files)) {
+                return Optional.empty();
+            }
+
+            Map<String, String> digestByFile = new TreeMap<>();
+            files.forEach((file, digest) -> digestByFile.put(String.valueOf(file), String.valueOf(digest)));
+            return Optional.of(new HelmChartManifest(folder, inputs, digestByFile));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the manifest for the generated files in the given folder.
+     *
+     * @param folder the folder where the chart of the deployment target was generated.
+     * @param inputs the digest of the inputs used to generate the chart.
+     * @param artifacts the files generated by the Helm writer.
+     */
+    public static void write(Path folder, String inputs, Map<String, String> artifacts) throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        for (String artifact : artifacts.keySet()) {
+            Path file = Path.of(artifact);
+            files.put(folder.relativize(file).toString(), digestOf(file));
+        }
+
+        Map<String, Object> content = new HashMap<>();
+        content.put(VERSION, FORMAT_VERSION);
+        content.put(INPUTS, inputs);
+        content.put(FILES, files);
+        Files.createDirectories(folder);
+        Files.writeString(folder.resolve(MANIFEST_FILE), Serialization.asYaml(content));
+    }
+
+    /**
+     * @return true if the chart was generated from the same inputs and none of the generated files has been modified or
+     *         removed since then.
+     */
+    public boolean isUpToDate(String currentInputs) {
+        if (!inputs.equals(currentInputs)) {
+            return false;
+        }
+
+        try {
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                Path path = folder.resolve(file.getKey());
+                if (!Files.exists(path) || !file.getValue().equals(digestOf(path))) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the generated files in the same form as they are returned by the Helm writer.
+     */
+    public Map<String, String> getArtifacts() {
+        Map<String, String> artifacts = new HashMap<>();
+        for (String file : files.keySet()) {
+            artifacts.put(folder.resolve(file).toString(), YamlExpressionParserUtils.EMPTY);
+        }
+
+        return artifacts;
+    }
+
+    public static Inputs inputs() {
+        return new Inputs();
+    }
+
+    /**
+     * @return the hex SHA-256 digest of the given content.
+     */
+    public static String digestOf(byte[] content) {
+        return toHex(newDigest().digest(content));
+    }
+
+    /**
+     * @return the hex SHA-256 digest of the given file, or of the relative paths and content of all the files within the
+     *         given folder.
+     */
+    public static String digestOf(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        if (Files.isDirectory(path)) {
+            // the digest of a directory includes the relative path and content of all its files
+            List<Path> children;
+            try (Stream<Path> walk = Files.walk(path)) {
+                children = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+
+            for (Path child : children) {
+                digest.update(path.relativize(child).toString().getBytes(StandardCharsets.UTF_8));
+                update(digest, child);
+            }
+        } else {
+            update(digest, path);
+        }
+
+        return toHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, Path file) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream is = Files.newInputStream(file)) {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Digest algorithm " + DIGEST_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Accumulates the inputs of a Helm chart generation into a single digest. Every input is prefixed by its name and
+     * length, so different combinations of inputs never produce the same digest.
+     */
+    public static final class Inputs {
+        private final MessageDigest digest = newDigest();
+
+        private Inputs() {
+
+        }
+
+        public Inputs add(String name, String value) {
+            return add(name, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public Inputs add(String name, byte[] value) {
+            digest.update(name.getBytes(StandardCharsets.UTF_8));
+            if (value == null) {
+                digest.update((byte) 0);
+            } else {
+                digest.update((byte) 1);
+                digest.update(Integer.toString(value.length).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) ':');
+                digest.update(value);
+            }
+
+            return this;
+        }
+
+        /**
+         * Adds the entries of the map sorted by key.
+         */
+        public Inputs addAll(String name, Map<String, byte[]> values) {
+            add(name, Integer.toString(values.size()));
+            new TreeMap<>(values).forEach((key, value) -> add(name + "." + key, value));
+            return this;
+        }
+
+        public Inputs addConfigReferences(String name, List<ConfigReference> configReferences) {
+            add(name, Integer.toString(configReferences.size()));
+            for (ConfigReference configReference : configReferences) {
+                add(name + ".property", configReference.getProperty());
+                add(name + ".paths", configReference.getPaths() == null ? null
+                        : Arrays.toString(configReference.getPaths()));
+                add(name + ".value", valueOf(configReference.getValue()));
+                add(name + ".expression", configReference.getExpression());
+                add(name + ".description", configReference.getDescription());
+                add(name + ".profile", configReference.getProfile());
+                add(name + ".required", Boolean.toString(configReference.isRequired()));
+                add(name + ".pattern", configReference.getPattern());
+                add(name + ".enum", valueOf(configReference.getEnumValues()));
+                add(name + ".maximum", valueOf(configReference.getMaximum()));
+                add(name + ".minimum", valueOf(configReference.getMinimum()));
+            }
+
+            return this;
+        }
+
+        /**
+         * Adds the relative path and content of all the files in the directory, if it exists.
+         */
+        public Inputs addDirectory(String name, Path directory) throws IOException {
+            if (directory == null || !Files.isDirectory(directory)) {
+                return add(name, (byte[]) null);
+            }
+
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(directory)) {
+                files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+
+            add(name, Integer.toString(files.size()));
+            for (Path file : files) {
+                add(name + "." + directory.relativize(file), Files.readAllBytes(file));
+            }
+
+            return this;
+        }
+
+        public String digest() {
+            return toHex(digest.digest());
+        }
+
+        private static String valueOf(Object value) {
+            return value == null ? null : String.valueOf(value);
+        }
+    }
+}
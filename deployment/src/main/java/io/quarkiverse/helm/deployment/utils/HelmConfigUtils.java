@@ -2,16 +2,22 @@ package io.quarkiverse.helm.deployment.utils;
 
 import static org.apache.commons.lang3.StringUtils.EMPTY;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import io.quarkiverse.helm.deployment.HelmChartConfig;
+import io.quarkiverse.helm.deployment.HelmRepository;
 
 public final class HelmConfigUtils {
 
     private static final String ROOTLESS_PROPERTY = "@.";
+    private static final String REPOSITORY_PREFIX = "quarkus.helm.repository";
+    private static final String REPOSITORIES_PREFIX = "quarkus.helm.repositories.\"%s\"";
 
     private HelmConfigUtils() {
 
@@ -24,6 +30,31 @@ public final class HelmConfigUtils {
                 property);
     }
 
+    /**
+     * @return the Helm repositories whose push is enabled by their configuration prefix, starting with
+     *         `quarkus.helm.repository`.
+     */
+    public static Map<String, HelmRepository> getRepositoriesToPush(HelmChartConfig helmConfig) {
+        Map<String, HelmRepository> repositories = new LinkedHashMap<>();
+        if (helmConfig.repository().push()) {
+            repositories.put(REPOSITORY_PREFIX, helmConfig.repository());
+        }
+
+        if (helmConfig.repositories() != null) {
+            new TreeMap<>(helmConfig.repositories()).forEach((name, repository) -> {
+                if (repository.push()) {
+                    repositories.put(String.format(REPOSITORIES_PREFIX, name), repository);
+                }
+            });
+        }
+
+        return repositories;
+    }
+
+    public static boolean isPushEnabled(HelmChartConfig helmConfig) {
+        return !getRepositoriesToPush(helmConfig).isEmpty();
+    }
+
     private static String deductProperty(String valuesRootAlias, List<String> dependencies, String property) {
         if (property.startsWith(ROOTLESS_PROPERTY)) {
             return property.replaceFirst(Pattern.quote(ROOTLESS_PROPERTY), EMPTY);
@@ -0,0 +1,133 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.logging.Logger;
+
+import io.dekorate.utils.Serialization;
+
+/**
+ * Collects how long every stage of the generation of a Helm chart takes, how many bytes it writes and, when the JVM
+ * supports it, how many bytes it allocates in the current thread.
+ *
+ * Every stage is logged at debug level once it's finished, and the whole report can be written into the
+ * `helm-generation-report.yaml` file.
+ */
+public final class HelmGenerationReport {
+    public static final String REPORT_FILE = "helm-generation-report.yaml";
+
+    private static final Logger LOGGER = Logger.getLogger(HelmGenerationReport.class);
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final long UNKNOWN = -1;
+
+    private final String name;
+    private final long start = System.nanoTime();
+    private final List<Map<String, Object>> stages = new ArrayList<>();
+
+    public HelmGenerationReport(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Runs the stage and records its metrics.
+     */
+    public <T> T measure(String stage, Action<T> action) throws IOException {
+        return measure(stage, action, false);
+    }
+
+    /**
+     * Runs the stage that generates the given files, and records its metrics including the size of these files.
+     */
+    public Map<String, String> measureFiles(String stage, Action<Map<String, String>> action) throws IOException {
+        return measure(stage, action, true);
+    }
+
+    /**
+     * Writes the report into the given folder.
+     *
+     * @return the path of the report file.
+     */
+    public Path write(Path folder) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("chart", name);
+        report.put("durationMs", toMillis(System.nanoTime() - start));
+        report.put("stages", stages);
+
+        Files.createDirectories(folder);
+        Path reportFile = folder.resolve(REPORT_FILE);
+        Files.writeString(reportFile, Serialization.asYaml(report));
+        LOGGER.debugf("Helm Chart \"%s\" generated in %.3f ms. Report written at '%s'", name, report.get("durationMs"),
+                reportFile);
+        return reportFile;
+    }
+
+    private <T> T measure(String stage, Action<T> action, boolean countFiles) throws IOException {
+        long allocatedBefore = allocatedBytes();
+        long startedAt = System.nanoTime();
+        T result = action.run();
+        long duration = System.nanoTime() - startedAt;
+        long allocatedAfter = allocatedBytes();
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("name", stage);
+        metrics.put("durationMs", toMillis(duration));
+        StringBuilder message = new StringBuilder(String.format("Helm Chart \"%s\": stage '%s' took %.3f ms", name, stage,
+                toMillis(duration)));
+        if (countFiles && result instanceof Map) {
+            long bytes = sizeOf(((Map<?, ?>) result).keySet());
+            metrics.put("bytes", bytes);
+            message.append(", wrote ").append(bytes).append(" bytes");
+        }
+
+        if (allocatedBefore != UNKNOWN && allocatedAfter != UNKNOWN) {
+            metrics.put("allocatedBytes", allocatedAfter - allocatedBefore);
+            message.append(", allocated ").append(allocatedAfter - allocatedBefore).append(" bytes");
+        }
+
+        stages.add(metrics);
+        LOGGER.debug(message);
+        return result;
+    }
+
+    private static long sizeOf(Iterable<?> files) throws IOException {
+        long bytes = 0;
+        for (Object file : files) {
+            Path path = Paths.get(String.valueOf(file));
+            if (Files.isRegularFile(path)) {
+                bytes += Files.size(path);
+            }
+        }
+
+        return bytes;
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / NANOS_PER_MILLI * 1000) / 1000.0;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+            if (allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled()) {
+                return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return UNKNOWN;
+    }
+
+    @FunctionalInterface
+    public interface Action<T> {
+        T run() throws IOException;
+    }
+}
@@ -6,17 +6,27 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.function.Consumer;
+import java.util.zip.Deflater;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
 import org.apache.commons.compress.utils.IOUtils;
 
 public final class HelmTarArchiver {
+    private static final String SOURCE_DATE_EPOCH = "SOURCE_DATE_EPOCH";
+    private static final String EMPTY = "";
 
     private HelmTarArchiver() {
 
@@ -24,20 +34,23 @@ public final class HelmTarArchiver {
 
     public static File createTarBall(File outputFile, File inputDirectory, List<File> fileList, String compression,
             Consumer<TarArchiveEntry> tarArchiveEntryCustomizer) throws IOException {
+        return createTarBall(outputFile, inputDirectory, fileList, compression, Deflater.DEFAULT_COMPRESSION, 1,
+                tarArchiveEntryCustomizer);
+    }
+
+    /**
+     * Creates the tarball using the given gzip compression level and number of compression threads. Both are ignored
+     * when the compression is not gzip.
+     */
+    public static File createTarBall(File outputFile, File inputDirectory, List<File> fileList, String compression,
+            int compressionLevel, int compressionThreads, Consumer<TarArchiveEntry> tarArchiveEntryCustomizer)
+            throws IOException {
 
         try (FileOutputStream fileOutputStream = new FileOutputStream(outputFile);
-                BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(fileOutputStream)) {
-
-            final TarArchiveOutputStream tarArchiveOutputStream;
-            if (isGzip(compression)) {
-                tarArchiveOutputStream = new TarArchiveOutputStream(new GzipCompressorOutputStream(bufferedOutputStream));
-            } else if (isBzip2(compression)) {
-                tarArchiveOutputStream = new TarArchiveOutputStream(new BZip2CompressorOutputStream(bufferedOutputStream));
-            } else {
-                tarArchiveOutputStream = new TarArchiveOutputStream(bufferedOutputStream);
-            }
-            tarArchiveOutputStream.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
-            tarArchiveOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+                BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(fileOutputStream);
+                TarArchiveOutputStream tarArchiveOutputStream = openTarArchive(bufferedOutputStream, compression,
+                        compressionLevel, compressionThreads)) {
+
             for (File currentFile : fileList) {
 
                 String relativeFilePath = inputDirectory.toURI().relativize(
@@ -58,12 +71,85 @@ public final class HelmTarArchiver {
                 }
                 tarArchiveOutputStream.closeArchiveEntry();
             }
-            tarArchiveOutputStream.close();
         }
 
         return outputFile;
     }
 
+    /**
+     * Creates a reproducible tarball: the entries are sorted by name, and their modification time, owner and mode are
+     * fixed, so the same content always produces the same bytes. Only the regular files are added, as done by
+     * `helm package`.
+     *
+     * The modification time is taken from the `SOURCE_DATE_EPOCH` environment variable if set, or the Unix epoch
+     * otherwise.
+     *
+     * @param entries the content of every file by its path within the tarball.
+     */
+    public static File createReproducibleTarBall(File outputFile, Map<String, Content> entries, String compression,
+            int compressionLevel, int compressionThreads) throws IOException {
+        Date modificationTime = reproducibleModificationTime();
+        try (FileOutputStream fileOutputStream = new FileOutputStream(outputFile);
+                BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(fileOutputStream);
+                TarArchiveOutputStream tarArchiveOutputStream = openTarArchive(bufferedOutputStream, compression,
+                        compressionLevel, compressionThreads)) {
+
+            for (Map.Entry<String, Content> entry : new TreeMap<>(entries).entrySet()) {
+                Content content = entry.getValue();
+                TarArchiveEntry tarEntry = new TarArchiveEntry(entry.getKey());
+                tarEntry.setSize(content.size());
+                tarEntry.setMode(TarArchiveEntry.DEFAULT_FILE_MODE);
+                tarEntry.setModTime(modificationTime);
+                tarEntry.setIds(0, 0);
+                tarEntry.setUserName(EMPTY);
+                tarEntry.setGroupName(EMPTY);
+                tarArchiveOutputStream.putArchiveEntry(tarEntry);
+                content.writeTo(tarArchiveOutputStream);
+                tarArchiveOutputStream.closeArchiveEntry();
+            }
+        }
+
+        return outputFile;
+    }
+
+    private static TarArchiveOutputStream openTarArchive(OutputStream output, String compression, int compressionLevel,
+            int compressionThreads) throws IOException {
+        final TarArchiveOutputStream tarArchiveOutputStream;
+        if (isGzip(compression) && compressionThreads > 1) {
+            tarArchiveOutputStream = new TarArchiveOutputStream(
+                    new ParallelGzipOutputStream(output, compressionLevel, compressionThreads));
+        } else if (isGzip(compression)) {
+            GzipParameters parameters = new GzipParameters();
+            parameters.setCompressionLevel(compressionLevel);
+            tarArchiveOutputStream = new TarArchiveOutputStream(new GzipCompressorOutputStream(output, parameters));
+        } else if (isBzip2(compression)) {
+            tarArchiveOutputStream = new TarArchiveOutputStream(new BZip2CompressorOutputStream(output));
+        } else {
+            tarArchiveOutputStream = new TarArchiveOutputStream(output);
+        }
+        tarArchiveOutputStream.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        tarArchiveOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        return tarArchiveOutputStream;
+    }
+
+    /**
+     * @return the modification time of the entries of the reproducible tarballs: the `SOURCE_DATE_EPOCH` environment
+     *         variable if set, or the Unix epoch otherwise.
+     */
+    public static Date reproducibleModificationTime() {
+        String sourceDateEpoch = System.getenv(SOURCE_DATE_EPOCH);
+        if (sourceDateEpoch == null || sourceDateEpoch.isBlank()) {
+            return new Date(0);
+        }
+
+        try {
+            return new Date(Long.parseLong(sourceDateEpoch.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid value of the " + SOURCE_DATE_EPOCH + " environment variable '"
+                    + sourceDateEpoch + "'. It must be the number of seconds since the Unix epoch.");
+        }
+    }
+
     private static boolean isGzip(String compression) {
         return compression.equalsIgnoreCase("tar.gz") || compression.equalsIgnoreCase("tgz");
     }
@@ -73,4 +159,41 @@ public final class HelmTarArchiver {
                 || compression.equalsIgnoreCase("tar.bzip2")
                 || compression.equalsIgnoreCase("tar.bz2");
     }
+
+    /**
+     * Content of a file within the tarball, either already in memory or read from the disk.
+     */
+    public interface Content {
+        long size() throws IOException;
+
+        void writeTo(OutputStream output) throws IOException;
+
+        static Content of(byte[] content) {
+            return new Content() {
+                @Override
+                public long size() {
+                    return content.length;
+                }
+
+                @Override
+                public void writeTo(OutputStream output) throws IOException {
+                    output.write(content);
+                }
+            };
+        }
+
+        static Content of(Path file) {
+            return new Content() {
+                @Override
+                public long size() throws IOException {
+                    return Files.size(file);
+                }
+
+                @Override
+                public void writeTo(OutputStream output) throws IOException {
+                    Files.copy(file, output);
+                }
+            };
+        }
+    }
 }
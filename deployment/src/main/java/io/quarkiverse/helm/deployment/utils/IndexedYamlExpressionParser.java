@@ -0,0 +1,149 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import static io.github.yamlpath.utils.PathUtils.NO_REPLACEMENT;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import io.github.yamlpath.YamlExpressionParser;
+
+/**
+ * YAMLPath parser that indexes the resources by `kind` and `metadata.name`, so the paths that start with filters like
+ * `(kind == Deployment && metadata.name == my-app)` are only evaluated on the matching resources, instead of on all
+ * the resources.
+ *
+ * The index is built the first time it's needed and built again after writing into the `kind` or the `metadata.name`
+ * of the resources. The parser is not thread-safe.
+ */
+public class IndexedYamlExpressionParser extends YamlExpressionParser {
+
+    private static final String KIND = "kind";
+    private static final String METADATA = "metadata";
+    private static final String NAME = "name";
+    private static final String METADATA_NAME = METADATA + "." + NAME;
+
+    private final List<Map<Object, Object>> resources;
+    private final Map<String, YamlPathExpression> expressions;
+    private final Map<List<Map<Object, Object>>, YamlExpressionParser> parsers = new IdentityHashMap<>();
+    private Index index;
+
+    public IndexedYamlExpressionParser(List<Map<Object, Object>> resources) {
+        this(resources, new HashMap<>());
+    }
+
+    /**
+     * @param expressions the compiled expressions by path, that can be shared by the parsers of the same chart
+     *        generation, so every path is only compiled once.
+     */
+    public IndexedYamlExpressionParser(List<Map<Object, Object>> resources, Map<String, YamlPathExpression> expressions) {
+        super(resources);
+        this.resources = getResources();
+        this.expressions = expressions;
+    }
+
+    @Override
+    public <T> Set<T> readAndReplace(String path, Object replacement) {
+        YamlPathExpression expression = expressions.computeIfAbsent(path, YamlPathExpression::compile);
+        YamlExpressionParser candidates = candidates(expression);
+        Set<T> found;
+        if (candidates == null) {
+            found = new LinkedHashSet<>();
+        } else if (candidates == this) {
+            found = super.readAndReplace(path, replacement);
+        } else {
+            found = candidates.readAndReplace(path, replacement);
+        }
+
+        if (!NO_REPLACEMENT.equals(replacement) && (expression.mayWrite(KIND) || expression.mayWrite(METADATA_NAME))) {
+            index = null;
+            parsers.clear();
+        }
+
+        return found;
+    }
+
+    /**
+     * @return the parser to evaluate the path with: this parser if all the resources might match the path, a parser of
+     *         the resources that might match it, or null if none can.
+     */
+    private YamlExpressionParser candidates(YamlPathExpression expression) {
+        if (!expression.hasFilter()) {
+            return this;
+        }
+
+        if (index == null) {
+            index = new Index(resources);
+        }
+
+        List<Map<Object, Object>> indexed = index.lookup(expression.getExpectedValue(KIND),
+                expression.getExpectedValue(METADATA_NAME));
+        List<Map<Object, Object>> candidates = expression.filter(indexed);
+        if (candidates.isEmpty()) {
+            return null;
+        } else if (candidates.size() == resources.size()) {
+            return this;
+        } else if (candidates == indexed) {
+            // the resources are shared, so any change is also visible from this parser
+            return parsers.computeIfAbsent(indexed, YamlExpressionParser::new);
+        }
+
+        return new YamlExpressionParser(candidates);
+    }
+
+    private static final class Index {
+        private final List<Map<Object, Object>> all;
+        private final Map<String, List<Map<Object, Object>>> byKind = new HashMap<>();
+        private final Map<String, List<Map<Object, Object>>> byName = new HashMap<>();
+        private final Map<String, Map<String, List<Map<Object, Object>>>> byKindAndName = new HashMap<>();
+        private boolean kindIndexed = true;
+        private boolean nameIndexed = true;
+
+        Index(List<Map<Object, Object>> resources) {
+            this.all = resources;
+            for (Map<Object, Object> resource : resources) {
+                Object kind = resource.get(KIND);
+                Object metadata = resource.get(METADATA);
+                Object name = metadata instanceof Map ? ((Map<?, ?>) metadata).get(NAME) : null;
+                // the filters also match numbers and booleans, and the library walks lists differently, so the index
+                // is only used when all the values are strings
+                kindIndexed &= kind == null || kind instanceof String;
+                nameIndexed &= (metadata == null || metadata instanceof Map) && (name == null || name instanceof String);
+                if (kind instanceof String) {
+                    byKind.computeIfAbsent((String) kind, k -> new ArrayList<>()).add(resource);
+                }
+
+                if (name instanceof String) {
+                    byName.computeIfAbsent((String) name, k -> new ArrayList<>()).add(resource);
+                }
+
+                if (kind instanceof String && name instanceof String) {
+                    byKindAndName.computeIfAbsent((String) kind, k -> new HashMap<>())
+                            .computeIfAbsent((String) name, k -> new ArrayList<>())
+                            .add(resource);
+                }
+            }
+        }
+
+        List<Map<Object, Object>> lookup(Optional<String> kind, Optional<String> name) {
+            boolean useKind = kind.isPresent() && kindIndexed;
+            boolean useName = name.isPresent() && nameIndexed;
+            if (useKind && useName) {
+                return byKindAndName.getOrDefault(kind.get(), Collections.emptyMap())
+                        .getOrDefault(name.get(), Collections.emptyList());
+            } else if (useKind) {
+                return byKind.getOrDefault(kind.get(), Collections.emptyList());
+            } else if (useName) {
+                return byName.getOrDefault(name.get(), Collections.emptyList());
+            }
+
+            return all;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.EMPTY;
+import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.END_EXPRESSION_TOKEN;
+import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.END_TAG;
+import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.SEPARATOR_QUOTES;
+import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.SEPARATOR_TOKEN;
+import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.START_EXPRESSION_TOKEN;
+import static io.quarkiverse.helm.deployment.utils.YamlExpressionParserUtils.START_TAG;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Rewrites the tokens that are used to carry the Helm expressions through the YAML/JSON serialization:
+ *
+ * <ol>
+ * <li>`"{{` is replaced by `{{`</li>
+ * <li>`}}"` is replaced by `}}`</li>
+ * <li>`":START:` is removed</li>
+ * <li>`:END:"` is removed</li>
+ * <li>`:DOUBLE_QUOTES` is replaced by `"`</li>
+ * <li>`:LINE_SEPARATOR:` is replaced by the system line separator</li>
+ * <li>a `\` followed by a line break, any whitespaces and another `\` is removed (Jackson escapes long strings this
+ * way)</li>
+ * </ol>
+ *
+ * The rules are chained in the given order, so every rule sees the output of the previous one. But instead of
+ * rewriting the whole content once per rule, every character is pushed through all the rules in a single scan, and
+ * each rule only keeps the few characters that might still be part of its pattern.
+ */
+public final class KnownPatternsRewriter {
+
+    private static final int MAX_REUSABLE_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<KnownPatternsRewriter> REWRITERS = ThreadLocal
+            .withInitial(() -> new KnownPatternsRewriter(new StringBuilder()));
+
+    private final Appendable output;
+    private final Rule first;
+
+    private KnownPatternsRewriter(Appendable output) {
+        this.output = output;
+        Rule last = new EscapedLineBreakRule(new OutputRule(output));
+        last = new LiteralRule(SEPARATOR_TOKEN, System.lineSeparator(), last);
+        last = new LiteralRule(SEPARATOR_QUOTES, "\"", last);
+        last = new LiteralRule(END_EXPRESSION_TOKEN + "\"", EMPTY, last);
+        last = new LiteralRule("\"" + START_EXPRESSION_TOKEN, EMPTY, last);
+        last = new LiteralRule(END_TAG + "\"", END_TAG, last);
+        this.first = new LiteralRule("\"" + START_TAG, START_TAG, last);
+    }
+
+    /**
+     * @return the content with all the known patterns rewritten.
+     */
+    public static String rewrite(CharSequence content) {
+        KnownPatternsRewriter rewriter = REWRITERS.get();
+        StringBuilder buffer = (StringBuilder) rewriter.output;
+        buffer.setLength(0);
+        try {
+            rewriter.append(content);
+            rewriter.finish();
+            return buffer.toString();
+        } catch (IOException e) {
+            // never happens when writing into a StringBuilder
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.setLength(0);
+            if (buffer.capacity() > MAX_REUSABLE_BUFFER_SIZE) {
+                buffer.trimToSize();
+            }
+        }
+    }
+
+    /**
+     * @return a new rewriter that writes the rewritten content into the given output.
+     */
+    public static KnownPatternsRewriter to(Appendable output) {
+        return new KnownPatternsRewriter(output);
+    }
+
+    /**
+     * @return a writer that rewrites the content on the fly before writing it into the given writer. Closing the returned
+     *         writer also closes the given writer.
+     */
+    public static Writer writer(Writer output) {
+        return new RewritingWriter(output, true);
+    }
+
+    /**
+     * @return a writer that rewrites the content on the fly before writing it into the given writer. Closing the returned
+     *         writer only writes the pending characters, and the given writer is left open to append more content.
+     */
+    public static Writer appendingWriter(Writer output) {
+        return new RewritingWriter(output, false);
+    }
+
+    public void append(char c) throws IOException {
+        first.accept(c);
+    }
+
+    public void append(CharSequence content) throws IOException {
+        append(content, 0, content.length());
+    }
+
+    public void append(CharSequence content, int start, int end) throws IOException {
+        for (int index = start; index < end; index++) {
+            first.accept(content.charAt(index));
+        }
+    }
+
+    public void append(char[] content, int offset, int length) throws IOException {
+        for (int index = offset; index < offset + length; index++) {
+            first.accept(content[index]);
+        }
+    }
+
+    /**
+     * Writes the characters that were kept because they might have been part of a pattern.
+     * The rewriter can be used again afterwards.
+     */
+    public void finish() throws IOException {
+        first.finish();
+    }
+
+    private static final class RewritingWriter extends Writer {
+        private final Writer output;
+        private final KnownPatternsRewriter rewriter;
+        private final boolean closeOutput;
+
+        RewritingWriter(Writer output, boolean closeOutput) {
+            this.output = output;
+            this.rewriter = new KnownPatternsRewriter(output);
+            this.closeOutput = closeOutput;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            rewriter.append((char) c);
+        }
+
+        @Override
+        public void write(char[] content, int offset, int length) throws IOException {
+            rewriter.append(content, offset, length);
+        }
+
+        @Override
+        public void write(String content, int offset, int length) throws IOException {
+            rewriter.append(content, offset, offset + length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // the characters that might be part of a pattern are kept until more content is written
+            output.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                rewriter.finish();
+            } finally {
+                if (closeOutput) {
+                    output.close();
+                }
+            }
+        }
+    }
+
+    private abstract static class Rule {
+        protected final Rule next;
+
+        Rule(Rule next) {
+            this.next = next;
+        }
+
+        abstract void accept(char c) throws IOException;
+
+        abstract void finish() throws IOException;
+
+        protected void emit(String value) throws IOException {
+            for (int index = 0; index < value.length(); index++) {
+                next.accept(value.charAt(index));
+            }
+        }
+    }
+
+    /**
+     * Replaces every non-overlapping occurrence of a literal pattern, from left to right, as
+     * {@link String#replace(CharSequence, CharSequence)} does.
+     */
+    private static final class LiteralRule extends Rule {
+        private final char[] pattern;
+        private final String replacement;
+        private final char[] pending;
+        private int length;
+
+        LiteralRule(String pattern, String replacement, Rule next) {
+            super(next);
+            this.pattern = pattern.toCharArray();
+            this.replacement = replacement;
+            this.pending = new char[this.pattern.length];
+        }
+
+        @Override
+        void accept(char c) throws IOException {
+            if (length == 0 && c != pattern[0]) {
+                next.accept(c);
+                return;
+            }
+
+            pending[length++] = c;
+            // drop the characters that can't start the pattern anymore
+            while (length > 0 && !pendingIsPrefix()) {
+                next.accept(pending[0]);
+                System.arraycopy(pending, 1, pending, 0, --length);
+            }
+
+            if (length == pattern.length) {
+                length = 0;
+                emit(replacement);
+            }
+        }
+
+        @Override
+        void finish() throws IOException {
+            for (int index = 0; index < length; index++) {
+                next.accept(pending[index]);
+            }
+
+            length = 0;
+            next.finish();
+        }
+
+        private boolean pendingIsPrefix() {
+            for (int index = 0; index < length; index++) {
+                if (pending[index] != pattern[index]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Removes the escaped line breaks that match the regular expression `\\\n(\s)*\\`.
+     */
+    private static final class EscapedLineBreakRule extends Rule {
+        private static final char ESCAPE = '\\';
+        private static final char LINE_BREAK = '\n';
+
+        private final StringBuilder pending = new StringBuilder();
+
+        EscapedLineBreakRule(Rule next) {
+            super(next);
+        }
+
+        @Override
+        void accept(char c) throws IOException {
+            if (pending.length() == 0) {
+                if (c == ESCAPE) {
+                    pending.append(c);
+                } else {
+                    next.accept(c);
+                }
+            } else if (pending.length() == 1) {
+                if (c == LINE_BREAK) {
+                    pending.append(c);
+                } else {
+                    release();
+                    accept(c);
+                }
+            } else if (c == ESCAPE) {
+                // the whole sequence matched
+                pending.setLength(0);
+            } else if (isWhitespace(c)) {
+                pending.append(c);
+            } else {
+                release();
+                accept(c);
+            }
+        }
+
+        @Override
+        void finish() throws IOException {
+            release();
+            next.finish();
+        }
+
+        private void release() throws IOException {
+            for (int index = 0; index < pending.length(); index++) {
+                next.accept(pending.charAt(index));
+            }
+
+            pending.setLength(0);
+        }
+
+        private static boolean isWhitespace(char c) {
+            // same characters as `\s` in regular expressions
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+        }
+    }
+
+    private static final class OutputRule extends Rule {
+        private final Appendable output;
+
+        OutputRule(Appendable output) {
+            super(null);
+            this.output = output;
+        }
+
+        @Override
+        void accept(char c) throws IOException {
+            output.append(c);
+        }
+
+        @Override
+        void finish() {
+            // nothing to do
+        }
+    }
+}
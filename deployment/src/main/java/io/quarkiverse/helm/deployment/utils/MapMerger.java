@@ -0,0 +1,103 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Merges the files provided by the users, like `Chart.yaml`, `values.<profile>.yaml` or `values.schema.json`, into the
+ * content generated by the extension, in a single pass over both trees:
+ *
+ * <ul>
+ * <li>the keys that are only in one of the maps are kept,</li>
+ * <li>when both values are maps, they are merged recursively,</li>
+ * <li>when both values are lists, they are merged using the {@link ListStrategy},</li>
+ * <li>otherwise, the value from the user wins.</li>
+ * </ul>
+ *
+ * The generated keys keep their order, and the keys that are only provided by the user are added after them. The
+ * given maps are not modified, but the result can share the nested maps and lists that are only in one of them.
+ */
+public final class MapMerger {
+
+    private static final Logger LOGGER = Logger.getLogger(MapMerger.class);
+    private static final String SEPARATOR = ".";
+
+    public enum ListStrategy {
+        /**
+         * The list from the user replaces the generated list.
+         */
+        REPLACE,
+        /**
+         * The items of the list from the user that are not in the generated list are added after the generated items.
+         */
+        APPEND
+    }
+
+    private MapMerger() {
+
+    }
+
+    /**
+     * @param source the name of the user file, that is used to report the conflicts.
+     * @return the generated map merged with the map from the user.
+     */
+    public static Map<String, Object> merge(Map<String, Object> generated, Map<String, Object> user,
+            ListStrategy listStrategy, String source) {
+        return merge(generated, user, listStrategy, source, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> merge(Map<String, Object> generated, Map<String, Object> user,
+            ListStrategy listStrategy, String source, String path) {
+        Map<String, Object> merged = new LinkedHashMap<>(generated);
+        for (Map.Entry<String, Object> entry : user.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            Object generatedValue = merged.get(key);
+            if (generatedValue == null) {
+                merged.put(key, value);
+            } else if (generatedValue instanceof Map && value instanceof Map) {
+                merged.put(key, merge((Map<String, Object>) generatedValue, (Map<String, Object>) value, listStrategy,
+                        source, path(path, key)));
+            } else if (generatedValue instanceof List && value instanceof List) {
+                merged.put(key, mergeLists((List<Object>) generatedValue, (List<Object>) value, listStrategy));
+            } else {
+                if (generatedValue instanceof Map || value instanceof Map) {
+                    LOGGER.warnf("The property '%s' in the file '%s' replaces a generated value of a different type",
+                            path(path, key), source);
+                } else if (value != null && !Objects.equals(generatedValue, value)) {
+                    LOGGER.debugf("The property '%s' in the file '%s' replaces the generated value '%s' with '%s'",
+                            path(path, key), source, generatedValue, value);
+                }
+
+                merged.put(key, value);
+            }
+        }
+
+        return merged;
+    }
+
+    private static List<Object> mergeLists(List<Object> generated, List<Object> user, ListStrategy listStrategy) {
+        if (listStrategy == ListStrategy.REPLACE) {
+            return user;
+        }
+
+        List<Object> merged = new ArrayList<>(generated);
+        for (Object item : user) {
+            if (!generated.contains(item)) {
+                merged.add(item);
+            }
+        }
+
+        return merged;
+    }
+
+    private static String path(String parent, String key) {
+        return parent == null ? key : parent + SEPARATOR + key;
+    }
+}
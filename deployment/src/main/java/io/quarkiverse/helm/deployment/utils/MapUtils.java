@@ -1,30 +1,37 @@
 package io.quarkiverse.helm.deployment.utils;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 public final class MapUtils {
+    private static final char SEPARATOR = '.';
+    private static final int INITIAL_DEPTH = 8;
+
     private MapUtils() {
 
     }
 
+    /**
+     * @return the values of the nested maps by their full property name, for example `app.image` for the `image`
+     *         value in the `app` map. The order of the entries is not defined.
+     */
     public static Map<String, Object> toPlainMap(Map<String, Object> map) {
-        return toPlainMap(new ArrayList<>(), map);
+        int leaves = countLeaves(map);
+        Map<String, Object> result = new HashMap<>((int) (leaves / 0.75f) + 1);
+        flatten(map, result);
+        return result;
     }
 
     public static Map<String, Object> toMultiValueUnsortedMap(Map<String, Object> map) {
         return toMultiValueMap(map, HashMap::new);
     }
 
-    public static Map<String, Object> toMultiValueSortedMap(Map<String, Object> map) {
-        return toMultiValueMap(map, TreeMap::new);
-    }
-
     private static Map<String, Object> toMultiValueMap(Map<String, Object> map, Supplier<Map<String, Object>> supplier) {
         Map<String, Object> multiValueMap = supplier.get();
         map.forEach((k, v) -> {
@@ -52,18 +59,59 @@ public final class MapUtils {
         return multiValueMap;
     }
 
-    private static Map<String, Object> toPlainMap(List<String> path, Map<String, Object> map) {
-        Map<String, Object> result = new HashMap<>();
-        for (Map.Entry<String, Object> entry : map.entrySet()) {
-            List<String> newPath = new ArrayList<>(path);
-            newPath.add(entry.getKey());
+    /**
+     * Walks the nested maps with a stack of iterators, so all the keys share the same path buffer and the leaves are
+     * directly added into the result.
+     */
+    @SuppressWarnings("unchecked")
+    private static void flatten(Map<String, Object> map, Map<String, Object> result) {
+        StringBuilder path = new StringBuilder();
+        Deque<Iterator<Map.Entry<String, Object>>> iterators = new ArrayDeque<>();
+        // the length of the path of the map at each depth
+        int[] pathLengths = new int[INITIAL_DEPTH];
+        iterators.push(map.entrySet().iterator());
+        while (!iterators.isEmpty()) {
+            Iterator<Map.Entry<String, Object>> entries = iterators.peek();
+            if (!entries.hasNext()) {
+                iterators.pop();
+                continue;
+            }
+
+            int depth = iterators.size() - 1;
+            Map.Entry<String, Object> entry = entries.next();
+            path.setLength(pathLengths[depth]);
+            if (depth > 0) {
+                path.append(SEPARATOR);
+            }
+
+            path.append(entry.getKey());
             if (entry.getValue() instanceof Map) {
-                result.putAll(toPlainMap(newPath, (Map<String, Object>) entry.getValue()));
+                if (depth + 1 == pathLengths.length) {
+                    pathLengths = Arrays.copyOf(pathLengths, pathLengths.length * 2);
+                }
+
+                pathLengths[depth + 1] = path.length();
+                iterators.push(((Map<String, Object>) entry.getValue()).entrySet().iterator());
             } else {
-                result.put(String.join(".", newPath), entry.getValue());
+                result.put(path.toString(), entry.getValue());
             }
         }
+    }
 
-        return result;
+    private static int countLeaves(Map<?, ?> map) {
+        int leaves = 0;
+        Deque<Map<?, ?>> maps = new ArrayDeque<>();
+        maps.push(map);
+        while (!maps.isEmpty()) {
+            for (Object value : maps.pop().values()) {
+                if (value instanceof Map) {
+                    maps.push((Map<?, ?>) value);
+                } else {
+                    leaves++;
+                }
+            }
+        }
+
+        return leaves;
     }
 }
@@ -0,0 +1,210 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip output stream that compresses blocks of the content concurrently.
+ *
+ * Every block is written as an independent gzip member, so the result is a standard multi-member gzip stream (see
+ * RFC 1952) that can be read by `helm`, `gunzip` or {@link java.util.zip.GZIPInputStream}. Since the members don't
+ * share their dictionaries, the output is slightly bigger than the one of a single-threaded gzip stream.
+ *
+ * The blocks are written in the same order as they were received, and only a few blocks per thread are kept in
+ * memory at the same time.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int OS_UNKNOWN = 255;
+    private static final int BLOCKS_PER_THREAD = 2;
+
+    private final OutputStream output;
+    private final int level;
+    private final int maxPendingBlocks;
+    private final ExecutorService executor;
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private byte[] block;
+    private int blockLength;
+    private boolean written;
+    private boolean closed;
+
+    /**
+     * @param output where the gzip stream is written.
+     * @param level the compression level, from 0 (no compression) to 9 (best compression), or -1 for the default
+     *        level.
+     * @param threads the number of threads that compress the blocks.
+     */
+    public ParallelGzipOutputStream(OutputStream output, int level, int threads) {
+        this(output, level, threads, DEFAULT_BLOCK_SIZE);
+    }
+
+    public ParallelGzipOutputStream(OutputStream output, int level, int threads, int blockSize) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid compression level " + level + ". It must be between "
+                    + Deflater.NO_COMPRESSION + " and " + Deflater.BEST_COMPRESSION);
+        }
+
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of compression threads " + threads + ". It must be "
+                    + "at least 1");
+        }
+
+        this.output = output;
+        this.level = level;
+        this.maxPendingBlocks = threads * BLOCKS_PER_THREAD;
+        this.executor = ConcurrencyUtils.newFixedThreadPool("helm-gzip", threads);
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] content, int offset, int length) throws IOException {
+        ensureOpen();
+        int remaining = length;
+        int position = offset;
+        while (remaining > 0) {
+            int chunk = Math.min(remaining, block.length - blockLength);
+            System.arraycopy(content, position, block, blockLength, chunk);
+            blockLength += chunk;
+            position += chunk;
+            remaining -= chunk;
+            if (blockLength == block.length) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the blocks that are already compressed. The current block is only compressed once it's full or the stream
+     * is closed.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        while (!pendingBlocks.isEmpty() && pendingBlocks.peekFirst().isDone()) {
+            writeNextBlock();
+        }
+
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        try {
+            // an empty content is still written as an empty gzip member
+            if (blockLength > 0 || !written) {
+                submitBlock();
+            }
+
+            while (!pendingBlocks.isEmpty()) {
+                writeNextBlock();
+            }
+
+            output.flush();
+        } finally {
+            closed = true;
+            executor.shutdownNow();
+            output.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] content = Arrays.copyOf(block, blockLength);
+        pendingBlocks.addLast(executor.submit(() -> compress(content, level)));
+        blockLength = 0;
+        written = true;
+        while (pendingBlocks.size() >= maxPendingBlocks) {
+            writeNextBlock();
+        }
+    }
+
+    private void writeNextBlock() throws IOException {
+        try {
+            output.write(pendingBlocks.removeFirst().get());
+        } catch (ExecutionException e) {
+            throw new IOException("Could not compress the content", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing the content", e);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * @return the given content as a complete gzip member: header, deflated content and trailer.
+     */
+    private static byte[] compress(byte[] content, int level) {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(content.length / 2 + 64);
+        writeHeader(member, level);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(512, content.length / 4)];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                member.write(buffer, 0, length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        writeInt(member, (int) crc.getValue());
+        writeInt(member, content.length);
+        return member.toByteArray();
+    }
+
+    private static void writeHeader(ByteArrayOutputStream member, int level) {
+        writeShort(member, GZIP_MAGIC);
+        member.write(Deflater.DEFLATED);
+        // no flags and no modification time
+        member.write(0);
+        writeInt(member, 0);
+        if (level == Deflater.BEST_COMPRESSION) {
+            member.write(2);
+        } else if (level == Deflater.BEST_SPEED) {
+            member.write(4);
+        } else {
+            member.write(0);
+        }
+
+        member.write(OS_UNKNOWN);
+    }
+
+    private static void writeShort(ByteArrayOutputStream output, int value) {
+        output.write(value & 0xff);
+        output.write((value >> 8) & 0xff);
+    }
+
+    private static void writeInt(ByteArrayOutputStream output, int value) {
+        writeShort(output, value & 0xffff);
+        writeShort(output, (value >> 16) & 0xffff);
+    }
+}
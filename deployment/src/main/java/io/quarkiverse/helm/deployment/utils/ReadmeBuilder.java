@@ -1,9 +1,5 @@
 package io.quarkiverse.helm.deployment.utils;
 
-import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
-
 import org.apache.commons.lang3.StringUtils;
 
 import io.quarkiverse.helm.deployment.HelmChartConfig;
@@ -81,7 +77,7 @@ public final class ReadmeBuilder {
         writeLine(TIP + message);
     }
 
-    public static String build(String name, HelmChartConfig helmConfig, Map<String, ValuesHolder.HelmValueHolder> values) {
+    public static String build(String name, HelmChartConfig helmConfig, ValuesTree values) {
         ReadmeBuilder builder = new ReadmeBuilder();
         // Title:
         // # {chart.name}
@@ -93,11 +89,8 @@ public final class ReadmeBuilder {
         builder.writeLine("The following table lists the configurable parameters and their default values.");
         builder.writeLine();
         builder.writeTableHeader("Parameter", "Description", "Default");
-        SortedSet<String> keys = new TreeSet<>(values.keySet());
-        for (String key : keys) {
-            ValuesHolder.HelmValueHolder value = values.get(key);
-            builder.writeTableRow(literal(key), value.configReference.getDescription(), value.value);
-        }
+        values.forEach((key, value) -> builder.writeTableRow(literal(key), value.configReference.getDescription(),
+                value.value));
 
         builder.writeLine();
         builder.writeLine("Specify each parameter using the `--set key=value[,key=value]` argument to `helm install`.");
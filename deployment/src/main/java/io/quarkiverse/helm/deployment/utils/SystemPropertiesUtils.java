@@ -1,12 +1,14 @@
 package io.quarkiverse.helm.deployment.utils;
 
 import static io.dekorate.utils.Strings.defaultIfEmpty;
-import static io.github.yamlpath.utils.StringUtils.isNullOrEmpty;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +16,7 @@ public final class SystemPropertiesUtils {
 
     private static final String SYSTEM_PROPERTY_START = "${";
     private static final String SYSTEM_PROPERTY_END = "}";
+    private static final String DEFAULT_VALUE_SEPARATOR = ":";
 
     private SystemPropertiesUtils() {
 
@@ -23,8 +26,54 @@ public final class SystemPropertiesUtils {
         return isNotEmpty(rawValue) && rawValue.contains(SYSTEM_PROPERTY_START);
     }
 
-    public static List<String> getSystemProperties(String str) {
-        return substringsBetween(str, SYSTEM_PROPERTY_START, SYSTEM_PROPERTY_END);
+    /**
+     * Parses the system properties of the value in a single pass, for example `${db.host:${DB_HOST:localhost}}`.
+     *
+     * @return the outermost system properties in the order they appear, with the system properties nested into their
+     *         default values. The system properties that are not closed are ignored, but not the ones they contain.
+     */
+    public static List<SystemProperty> getSystemProperties(String str) {
+        if (isEmpty(str)) {
+            return Collections.emptyList();
+        }
+
+        List<SystemProperty> properties = new ArrayList<>();
+        Deque<OpenSystemProperty> open = new ArrayDeque<>();
+        int index = 0;
+        while (index < str.length()) {
+            if (str.startsWith(SYSTEM_PROPERTY_START, index)) {
+                open.push(new OpenSystemProperty(index + SYSTEM_PROPERTY_START.length()));
+                index += SYSTEM_PROPERTY_START.length();
+                continue;
+            }
+
+            OpenSystemProperty current = open.peek();
+            if (current != null) {
+                if (str.startsWith(DEFAULT_VALUE_SEPARATOR, index) && current.separator < 0) {
+                    current.separator = index;
+                } else if (str.startsWith(SYSTEM_PROPERTY_END, index)) {
+                    open.pop();
+                    SystemProperty property = current.close(str, index);
+                    if (open.isEmpty()) {
+                        properties.add(property);
+                    } else {
+                        open.peek().add(property);
+                    }
+                }
+            }
+
+            index++;
+        }
+
+        // the properties that are never closed are not properties, but the properties inside them are
+        Iterator<OpenSystemProperty> notClosed = open.descendingIterator();
+        while (notClosed.hasNext()) {
+            OpenSystemProperty property = notClosed.next();
+            properties.addAll(property.nameProperties);
+            properties.addAll(property.defaultValueProperties);
+        }
+
+        return properties;
     }
 
     public static String getPropertyFromSystem(String propertyName, String defaultValue) {
@@ -34,55 +83,61 @@ public final class SystemPropertiesUtils {
         return defaultIfEmpty(value, defaultValue);
     }
 
-    private static List<String> substringsBetween(String str, String open, String close) {
-        if (isEmpty(str) || isEmpty(open) || isEmpty(close)) {
-            return Collections.emptyList();
+    /**
+     * A system property like `${name}` or `${name:default value}`.
+     */
+    public static final class SystemProperty {
+        private final String name;
+        private final String defaultValue;
+        private final List<SystemProperty> defaultValueProperties;
+
+        SystemProperty(String name, String defaultValue, List<SystemProperty> defaultValueProperties) {
+            this.name = name;
+            this.defaultValue = defaultValue;
+            this.defaultValueProperties = defaultValueProperties;
         }
 
-        int closeLen = close.length();
-        int openLen = open.length();
-        List<String> list = new ArrayList<>();
-        int end;
-        for (int pos = 0; pos < str.length() - closeLen; pos = end + closeLen) {
-            int start = str.indexOf(open, pos);
-            if (start < 0) {
-                break;
-            }
+        public String getName() {
+            return name;
+        }
 
-            start += openLen;
-            end = str.indexOf(close, start);
-            if (end < 0) {
-                break;
-            }
+        public Optional<String> getDefaultValue() {
+            return Optional.ofNullable(defaultValue);
+        }
 
-            String currentStr = str.substring(start);
-            String tentative = currentStr.substring(0, end - start);
-            while (countMatches(tentative, open) != countMatches(tentative, close)) {
-                end++;
-                if (end >= str.length()) {
-                    break;
-                }
+        /**
+         * @return the system properties that are in the default value.
+         */
+        public List<SystemProperty> getDefaultValueProperties() {
+            return defaultValueProperties;
+        }
+    }
 
-                tentative = currentStr.substring(0, end - start);
-            }
+    private static final class OpenSystemProperty {
+        private final int start;
+        private int separator = -1;
+        private final List<SystemProperty> nameProperties = new ArrayList<>();
+        private final List<SystemProperty> defaultValueProperties = new ArrayList<>();
 
-            list.add(tentative);
+        private OpenSystemProperty(int start) {
+            this.start = start;
         }
 
-        return list;
-    }
-
-    private static int countMatches(String str, String sub) {
-        if (!isNullOrEmpty(str) && !isNullOrEmpty(sub)) {
-            int count = 0;
+        private void add(SystemProperty property) {
+            if (separator < 0) {
+                nameProperties.add(property);
+            } else {
+                defaultValueProperties.add(property);
+            }
+        }
 
-            for (int idx = 0; (idx = str.indexOf(sub, idx)) != -1; idx += sub.length()) {
-                ++count;
+        private SystemProperty close(String str, int end) {
+            if (separator < 0) {
+                return new SystemProperty(str.substring(start, end), null, Collections.emptyList());
             }
 
-            return count;
-        } else {
-            return 0;
+            return new SystemProperty(str.substring(start, separator),
+                    str.substring(separator + DEFAULT_VALUE_SEPARATOR.length(), end), defaultValueProperties);
         }
     }
 }
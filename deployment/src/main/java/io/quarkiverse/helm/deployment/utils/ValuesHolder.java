@@ -9,15 +9,16 @@ import org.apache.commons.lang3.StringUtils;
 import io.dekorate.ConfigReference;
 
 public class ValuesHolder {
-    private final Map<String, HelmValueHolder> prodValues = new HashMap<>();
-    private final Map<String, Map<String, HelmValueHolder>> valuesByProfile = new HashMap<>();
+    // the values as trees, so the property names are only split once
+    private final ValuesTree prodTree = new ValuesTree();
+    private final Map<String, ValuesTree> treesByProfile = new HashMap<>();
 
-    public Map<String, HelmValueHolder> getProdValues() {
-        return Collections.unmodifiableMap(prodValues);
+    public ValuesTree getProdTree() {
+        return prodTree;
     }
 
-    public Map<String, Map<String, HelmValueHolder>> getValuesByProfile() {
-        return Collections.unmodifiableMap(valuesByProfile);
+    public Map<String, ValuesTree> getTreesByProfile() {
+        return Collections.unmodifiableMap(treesByProfile);
     }
 
     public void put(String property, ConfigReference config) {
@@ -25,24 +26,32 @@ public class ValuesHolder {
     }
 
     public void put(String property, ConfigReference config, Object value) {
-        prodValues.put(property, new HelmValueHolder(value, config));
+        put(property, config, value, null);
     }
 
     public void put(String property, ConfigReference config, Object value, String profile) {
-        get(profile).put(property, new HelmValueHolder(value, config));
+        tree(profile).put(property, new HelmValueHolder(value, config));
     }
 
     public void putIfAbsent(String property, ConfigReference config, Object value, String profile) {
-        get(profile).putIfAbsent(property, new HelmValueHolder(value, config));
+        tree(profile).putIfAbsent(property, new HelmValueHolder(value, config));
     }
 
-    public Map<String, HelmValueHolder> get(String profile) {
-        Map<String, HelmValueHolder> values = prodValues;
+    /**
+     * @return the values of the profile, or the prod values if the profile is empty, or null if the profile has no values.
+     */
+    public ValuesTree get(String profile) {
+        return StringUtils.isNotEmpty(profile) ? treesByProfile.get(profile) : prodTree;
+    }
+
+    private ValuesTree tree(String profile) {
+        ValuesTree tree = prodTree;
         if (StringUtils.isNotEmpty(profile)) {
-            values = valuesByProfile.computeIfAbsent(profile, p -> new HashMap<>());
+            // the values of the profile fall through to the prod values
+            tree = treesByProfile.computeIfAbsent(profile, p -> new ValuesTree(prodTree));
         }
 
-        return values;
+        return tree;
     }
 
     public static class HelmValueHolder {
@@ -2,16 +2,16 @@ package io.quarkiverse.helm.deployment.utils;
 
 import static io.quarkiverse.helm.deployment.utils.HelmConfigUtils.deductProperty;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-
 import io.dekorate.ConfigReference;
-import io.dekorate.utils.Serialization;
 import io.quarkiverse.helm.deployment.HelmChartConfig;
 import io.quarkiverse.helm.deployment.ValuesSchemaPropertyConfig;
 import io.quarkiverse.helm.model.ValuesSchema;
@@ -22,85 +22,25 @@ public final class ValuesSchemaUtils {
 
     }
 
-    public static Map<String, Object> createSchema(HelmChartConfig helmConfig,
-            Map<String, ValuesHolder.HelmValueHolder> prodValues) {
+    /**
+     * @return the schema of the values, that can be directly written into the `values.schema.json` file.
+     */
+    public static ValuesSchema createValuesSchema(HelmChartConfig helmConfig, ValuesTree prodValues) {
         ValuesSchema schema = new ValuesSchema();
         schema.setTitle(helmConfig.valuesSchema().title());
 
         // from value references
-        for (Map.Entry<String, ValuesHolder.HelmValueHolder> value : prodValues.entrySet()) {
-            ConfigReference configReference = value.getValue().configReference;
-            String[] tree = deductProperty(helmConfig, value.getKey()).split(Pattern.quote("."));
-            ValuesSchemaProperty parent = null;
-            Map<String, ValuesSchemaProperty> location = schema.getProperties();
-            for (int index = 0; index < tree.length - 1; index++) {
-                String part = tree[index];
-                ValuesSchemaProperty next = location.get(part);
-                if (next == null) {
-                    next = new ValuesSchemaProperty();
-                    next.setType("object");
-                    location.put(part, next);
-                }
-
-                parent = next;
-                location = next.getProperties();
-            }
-
-            String propertyName = tree[tree.length - 1];
-            Object propertyValue = value.getValue().value;
-
-            ValuesSchemaProperty property = location.getOrDefault(propertyName, new ValuesSchemaProperty());
-            property.setDescription(configReference.getDescription());
-            property.setPattern(configReference.getPattern());
-            property.setEnumValues(configReference.getEnumValues());
-            property.setMaximum(configReference.getMaximum());
-            property.setMinimum(configReference.getMinimum());
-            if (configReference.isRequired()) {
-                if (parent == null) {
-                    schema.getRequired().add(propertyName);
-                } else {
-                    parent.getRequired().add(propertyName);
-                }
-            }
-            if (propertyValue == null) {
-                property.setType("null");
-            } else if (propertyValue instanceof Integer) {
-                property.setType("integer");
-            } else if (propertyValue instanceof Number) {
-                property.setType("number");
-            } else if (propertyValue instanceof Collection) {
-                property.setType("array");
-            } else if (propertyValue instanceof Boolean) {
-                property.setType("boolean");
-            } else {
-                property.setType("string");
-            }
-
-            location.put(propertyName, property);
-        }
+        addValues(helmConfig, schema, new ArrayList<>(), prodValues.getRoot());
 
         // from properties
         for (Map.Entry<String, ValuesSchemaPropertyConfig> propertyFromConfig : helmConfig.valuesSchema().properties()
                 .entrySet()) {
             String name = propertyFromConfig.getValue().name().orElse(propertyFromConfig.getKey());
 
-            String[] tree = deductProperty(helmConfig, name).split(Pattern.quote("."));
-            ValuesSchemaProperty parent = null;
-            Map<String, ValuesSchemaProperty> location = schema.getProperties();
-            for (int index = 0; index < tree.length - 1; index++) {
-                String part = tree[index];
-                ValuesSchemaProperty next = location.get(part);
-                if (next == null) {
-                    next = new ValuesSchemaProperty();
-                    next.setType("object");
-                    location.put(part, next);
-                }
-
-                parent = next;
-                location = next.getProperties();
-            }
-
-            String propertyName = tree[tree.length - 1];
+            List<String> tree = Arrays.asList(deductProperty(helmConfig, name).split(Pattern.quote(".")));
+            ValuesSchemaProperty parent = getParent(schema, tree);
+            Map<String, ValuesSchemaProperty> location = parent == null ? schema.getProperties() : parent.getProperties();
+            String propertyName = tree.get(tree.size() - 1);
             ValuesSchemaProperty property = location.getOrDefault(propertyName, new ValuesSchemaProperty());
             propertyFromConfig.getValue().description().ifPresent(property::setDescription);
             propertyFromConfig.getValue().pattern().ifPresent(property::setPattern);
@@ -122,8 +62,82 @@ public final class ValuesSchemaUtils {
             location.put(propertyName, property);
         }
 
-        // convert to map
-        return Serialization.unmarshal(Serialization.asJson(schema), new TypeReference<Map<String, Object>>() {
-        });
+        return schema;
+    }
+
+    private static void addValues(HelmChartConfig helmConfig, ValuesSchema schema, List<String> path, ValuesTree.Node node) {
+        for (ValuesTree.Node child : node.getChildren().values()) {
+            path.add(child.getName());
+            if (child.getValue() != null) {
+                String property = deductProperty(helmConfig, child.getProperty());
+                // the values that are not under the root alias, like the ones from the user values.yaml file, are moved
+                List<String> tree = property.equals(child.getProperty()) ? path
+                        : Arrays.asList(property.split(Pattern.quote(".")));
+                addValue(schema, tree, child.getValue());
+            }
+
+            addValues(helmConfig, schema, path, child);
+            path.remove(path.size() - 1);
+        }
+    }
+
+    private static void addValue(ValuesSchema schema, List<String> tree, ValuesHolder.HelmValueHolder value) {
+        ConfigReference configReference = value.configReference;
+        ValuesSchemaProperty parent = getParent(schema, tree);
+        Map<String, ValuesSchemaProperty> location = parent == null ? schema.getProperties() : parent.getProperties();
+        String propertyName = tree.get(tree.size() - 1);
+        Object propertyValue = value.value;
+
+        ValuesSchemaProperty property = location.getOrDefault(propertyName, new ValuesSchemaProperty());
+        property.setDescription(configReference.getDescription());
+        property.setPattern(configReference.getPattern());
+        property.setEnumValues(configReference.getEnumValues());
+        property.setMaximum(configReference.getMaximum());
+        property.setMinimum(configReference.getMinimum());
+        if (configReference.isRequired()) {
+            if (parent == null) {
+                schema.getRequired().add(propertyName);
+            } else {
+                parent.getRequired().add(propertyName);
+            }
+        }
+        if (propertyValue == null) {
+            property.setType("null");
+        } else if (propertyValue instanceof Integer) {
+            property.setType("integer");
+        } else if (propertyValue instanceof Number) {
+            property.setType("number");
+        } else if (propertyValue instanceof Collection) {
+            property.setType("array");
+        } else if (propertyValue instanceof Boolean) {
+            property.setType("boolean");
+        } else {
+            property.setType("string");
+        }
+
+        location.put(propertyName, property);
+    }
+
+    /**
+     * @return the property that contains the last part of the tree, or null if it's at the root of the schema. The
+     *         missing properties are created as objects.
+     */
+    private static ValuesSchemaProperty getParent(ValuesSchema schema, List<String> tree) {
+        ValuesSchemaProperty parent = null;
+        Map<String, ValuesSchemaProperty> location = schema.getProperties();
+        for (int index = 0; index < tree.size() - 1; index++) {
+            String part = tree.get(index);
+            ValuesSchemaProperty next = location.get(part);
+            if (next == null) {
+                next = new ValuesSchemaProperty();
+                next.setType("object");
+                location.put(part, next);
+            }
+
+            parent = next;
+            location = next.getProperties();
+        }
+
+        return parent;
     }
 }
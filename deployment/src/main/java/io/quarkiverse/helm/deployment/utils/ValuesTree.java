@@ -0,0 +1,261 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * The values of a chart as a tree of the parts of the property names, for example `app.image` and `app.ports.http`
+ * share the `app` node. The property names are split only once, when the values are added, and the `values.yaml`
+ * files, the `values.schema.json` file and the README are all produced by walking this tree.
+ *
+ * The tree of a profile is a layer over the tree of the prod values: it only holds the values of the profile, and the
+ * lookups and the walks fall through to the prod values that the profile doesn't override, without copying them.
+ */
+public final class ValuesTree {
+
+    private static final char SEPARATOR = '.';
+    // the parts are sorted as if they were followed by the separator, like in the sorted property names where `a.b`
+    // comes before `a-b.c`
+    private static final Comparator<String> PROPERTY_NAME_ORDER = ValuesTree::compareParts;
+
+    private final Node root = new Node(null);
+    private final ValuesTree base;
+
+    public ValuesTree() {
+        this(null);
+    }
+
+    /**
+     * @param base the values to use when this tree doesn't have them, like the prod values for a profile, or null.
+     */
+    public ValuesTree(ValuesTree base) {
+        if (base != null && base.base != null) {
+            throw new IllegalArgumentException("The base values can't be a layer over other values");
+        }
+
+        this.base = base;
+    }
+
+    public static ValuesTree of(Map<String, ValuesHolder.HelmValueHolder> values) {
+        ValuesTree tree = new ValuesTree();
+        values.forEach(tree::put);
+        return tree;
+    }
+
+    public void put(String property, ValuesHolder.HelmValueHolder value) {
+        Node node = node(property);
+        node.property = property;
+        node.value = value;
+    }
+
+    /**
+     * Adds the value unless this tree already has a value for the property. The values of the base tree are ignored.
+     *
+     * @return whether the value was added.
+     */
+    public boolean putIfAbsent(String property, ValuesHolder.HelmValueHolder value) {
+        Node node = node(property);
+        if (node.value != null) {
+            return false;
+        }
+
+        node.property = property;
+        node.value = value;
+        return true;
+    }
+
+    /**
+     * @return the value of the property, from this tree or else from the base tree, or null if there is none.
+     */
+    public ValuesHolder.HelmValueHolder get(String property) {
+        Node node = root;
+        int start = 0;
+        int end;
+        while (node != null && (end = property.indexOf(SEPARATOR, start)) >= 0) {
+            node = node.children.get(property.substring(start, end));
+            start = end + 1;
+        }
+
+        if (node != null) {
+            node = node.children.get(property.substring(start));
+        }
+
+        if (node != null && node.value != null) {
+            return node.value;
+        }
+
+        return base != null ? base.get(property) : null;
+    }
+
+    /**
+     * @return the first node of this tree only, in the order of the property names, with a value of a property that ends
+     *         with the suffix, or null if there is none.
+     */
+    public Node findBySuffix(String suffix) {
+        return findBySuffix(root, suffix);
+    }
+
+    /**
+     * Visits all the values, the value of a property before the values of its nested properties.
+     */
+    public void forEach(BiConsumer<String, ValuesHolder.HelmValueHolder> visitor) {
+        forEach(root, baseRoot(), visitor);
+    }
+
+    /**
+     * @return the root of the values of this tree only, without the values of the base tree.
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the values as nested sorted maps, as they are written into the `values.yaml` files. When a property has
+     *         both a value and nested properties, the nested properties win.
+     */
+    public Map<String, Object> toMap() {
+        return toMap(root, baseRoot());
+    }
+
+    private Node node(String property) {
+        Node node = root;
+        int start = 0;
+        int end;
+        while ((end = property.indexOf(SEPARATOR, start)) >= 0) {
+            node = node.child(property.substring(start, end));
+            start = end + 1;
+        }
+
+        return node.child(property.substring(start));
+    }
+
+    private static Node findBySuffix(Node node, String suffix) {
+        for (Node child : node.children.values()) {
+            if (child.value != null && child.property.endsWith(suffix)) {
+                return child;
+            }
+
+            Node found = findBySuffix(child, suffix);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        return null;
+    }
+
+    private Node baseRoot() {
+        return base != null ? base.root : null;
+    }
+
+    private static void forEach(Node node, Node base, BiConsumer<String, ValuesHolder.HelmValueHolder> visitor) {
+        Node withValue = node != null && node.value != null ? node : base;
+        if (withValue != null && withValue.value != null) {
+            visitor.accept(withValue.property, withValue.value);
+        }
+
+        forEachChild(node, base, (child, baseChild) -> forEach(child, baseChild, visitor));
+    }
+
+    private static Map<String, Object> toMap(Node node, Node base) {
+        Map<String, Object> map = new TreeMap<>();
+        forEachChild(node, base, (child, baseChild) -> {
+            String name = child != null ? child.name : baseChild.name;
+            if (hasChildren(child) || hasChildren(baseChild)) {
+                map.put(name, toMap(child, baseChild));
+            } else {
+                map.put(name, (child != null && child.value != null ? child : baseChild).value.value);
+            }
+        });
+
+        return map;
+    }
+
+    /**
+     * Visits the children of both nodes in order, together when both nodes have a child with the same name.
+     */
+    private static void forEachChild(Node node, Node base, BiConsumer<Node, Node> visitor) {
+        Iterator<Node> children = node != null ? node.children.values().iterator() : Collections.emptyIterator();
+        Iterator<Node> baseChildren = base != null ? base.children.values().iterator() : Collections.emptyIterator();
+        Node child = next(children);
+        Node baseChild = next(baseChildren);
+        while (child != null || baseChild != null) {
+            int result = child == null ? 1 : baseChild == null ? -1 : compareParts(child.name, baseChild.name);
+            if (result < 0) {
+                visitor.accept(child, null);
+                child = next(children);
+            } else if (result > 0) {
+                visitor.accept(null, baseChild);
+                baseChild = next(baseChildren);
+            } else {
+                visitor.accept(child, baseChild);
+                child = next(children);
+                baseChild = next(baseChildren);
+            }
+        }
+    }
+
+    private static Node next(Iterator<Node> nodes) {
+        return nodes.hasNext() ? nodes.next() : null;
+    }
+
+    private static boolean hasChildren(Node node) {
+        return node != null && !node.children.isEmpty();
+    }
+
+    private static int compareParts(String first, String second) {
+        int length = Math.min(first.length(), second.length());
+        for (int index = 0; index < length; index++) {
+            int result = Character.compare(first.charAt(index), second.charAt(index));
+            if (result != 0) {
+                return result;
+            }
+        }
+
+        if (first.length() == second.length()) {
+            return 0;
+        }
+
+        return first.length() == length
+                ? Character.compare(SEPARATOR, second.charAt(length))
+                : Character.compare(first.charAt(length), SEPARATOR);
+    }
+
+    public static final class Node {
+        private final String name;
+        private final Map<String, Node> children = new TreeMap<>(PROPERTY_NAME_ORDER);
+        private String property;
+        private ValuesHolder.HelmValueHolder value;
+
+        private Node(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the full property name, or null if the node only groups nested properties.
+         */
+        public String getProperty() {
+            return property;
+        }
+
+        public ValuesHolder.HelmValueHolder getValue() {
+            return value;
+        }
+
+        public Map<String, Node> getChildren() {
+            return Collections.unmodifiableMap(children);
+        }
+
+        private Node child(String name) {
+            return children.computeIfAbsent(name, Node::new);
+        }
+    }
+}
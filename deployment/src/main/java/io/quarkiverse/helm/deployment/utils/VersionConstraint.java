@@ -0,0 +1,274 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The semantic version constraints of the Helm dependencies, for example `1.2.3`, `~1.2`, `^2.0.0`, `>= 1.2, < 3`,
+ * `1.x || 2.x` or `1.2 - 1.4.5`. The constraints follow the same rules as Helm: the pre-release versions only match
+ * the constraints that include a pre-release version.
+ */
+public final class VersionConstraint {
+
+    private static final Pattern VERSION = Pattern
+            .compile("v?(\\d+|[xX*])(?:\\.(\\d+|[xX*]))?(?:\\.(\\d+|[xX*]))?(?:-([0-9A-Za-z.-]+))?(?:\\+[0-9A-Za-z.-]+)?");
+    private static final Pattern COMPARATOR = Pattern.compile("(=|!=|>=|<=|>|<|~>|~|\\^)?(.+)");
+    private static final Pattern OPERATOR_SPACES = Pattern.compile("(=|!=|>=|<=|>|<|~>|~|\\^)\\s+");
+    private static final int WILDCARD = -1;
+
+    private final String constraint;
+    private final List<List<Comparator>> alternatives;
+
+    private VersionConstraint(String constraint, List<List<Comparator>> alternatives) {
+        this.constraint = constraint;
+        this.alternatives = alternatives;
+    }
+
+    public static VersionConstraint parse(String constraint) {
+        List<List<Comparator>> alternatives = new ArrayList<>();
+        for (String alternative : constraint.split("\\|\\|")) {
+            String[] tokens = OPERATOR_SPACES.matcher(alternative.replace(',', ' ')).replaceAll("$1").trim().split("\\s+");
+            List<Comparator> comparators = new ArrayList<>();
+            for (int index = 0; index < tokens.length; index++) {
+                if (tokens[index].isEmpty()) {
+                    continue;
+                }
+
+                if (index + 2 < tokens.length && tokens[index + 1].equals("-")) {
+                    // hyphen range: `1.2 - 1.4.5` is `>= 1.2, <= 1.4.5`
+                    comparators.add(comparator(">=", tokens[index], constraint));
+                    comparators.add(comparator("<=", tokens[index + 2], constraint));
+                    index += 2;
+                } else {
+                    Matcher matcher = COMPARATOR.matcher(tokens[index]);
+                    matcher.matches();
+                    comparators.add(comparator(Optional.ofNullable(matcher.group(1)).orElse("="), matcher.group(2),
+                            constraint));
+                }
+            }
+
+            alternatives.add(comparators);
+        }
+
+        return new VersionConstraint(constraint, alternatives);
+    }
+
+    /**
+     * @return the version if the constraint is a single version like `1.2.3` or `=1.2.3`, or empty otherwise.
+     */
+    public Optional<String> exactVersion() {
+        if (alternatives.size() == 1 && alternatives.get(0).size() == 1) {
+            Comparator comparator = alternatives.get(0).get(0);
+            if (comparator.operator.equals("=") && !comparator.version.isPartial()) {
+                return Optional.of(comparator.text);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    public boolean matches(String version) {
+        Optional<Version> parsed = Version.parse(version);
+        if (parsed.isEmpty() || parsed.get().isPartial()) {
+            return false;
+        }
+
+        for (List<Comparator> comparators : alternatives) {
+            if (parsed.get().preRelease.isEmpty() || comparators.stream().anyMatch(c -> !c.version.preRelease.isEmpty())) {
+                if (comparators.stream().allMatch(c -> c.predicate.test(parsed.get()))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the highest version that matches the constraint.
+     */
+    public Optional<String> highest(Collection<String> versions) {
+        String highest = null;
+        for (String version : versions) {
+            if (matches(version) && (highest == null || compare(version, highest) > 0)) {
+                highest = version;
+            }
+        }
+
+        return Optional.ofNullable(highest);
+    }
+
+    /**
+     * Compares two semantic versions, ignoring the build metadata.
+     */
+    public static int compare(String first, String second) {
+        return Version.parse(first).orElseThrow().compareTo(Version.parse(second).orElseThrow());
+    }
+
+    @Override
+    public String toString() {
+        return constraint;
+    }
+
+    private static Comparator comparator(String operator, String text, String constraint) {
+        Version version = Version.parse(text).orElseThrow(() -> new IllegalArgumentException(
+                "Invalid version '" + text + "' in the version constraint '" + constraint + "'"));
+        return new Comparator(operator, text, version, predicate(operator, version));
+    }
+
+    private static Predicate<Version> predicate(String operator, Version version) {
+        Version lower = version.withZeros();
+        Version upper = version.nextOfPartial();
+        switch (operator) {
+            case "=":
+                return v -> version.isPartial() ? inRange(v, lower, upper) : v.compareTo(version) == 0;
+            case "!=":
+                return v -> version.isPartial() ? !inRange(v, lower, upper) : v.compareTo(version) != 0;
+            case ">":
+                return v -> version.isPartial() ? upper == null || v.compareTo(upper) >= 0 : v.compareTo(version) > 0;
+            case ">=":
+                return v -> v.compareTo(lower) >= 0;
+            case "<":
+                return v -> v.compareTo(lower) < 0;
+            case "<=":
+                return v -> version.isPartial() ? upper == null || v.compareTo(upper) < 0 : v.compareTo(version) <= 0;
+            case "~":
+            case "~>":
+                // ~1.2.3 is >= 1.2.3, < 1.3.0, and ~1 is >= 1.0.0, < 2.0.0
+                Version tildeUpper = version.parts[0] == WILDCARD ? null
+                        : version.parts[1] == WILDCARD ? new Version(version.parts[0] + 1, 0, 0)
+                                : new Version(version.parts[0], version.parts[1] + 1, 0);
+                return v -> inRange(v, lower, tildeUpper);
+            default:
+                // ^1.2.3 is >= 1.2.3, < 2.0.0, ^0.2.3 is >= 0.2.3, < 0.3.0, and ^0.0.3 is >= 0.0.3, < 0.0.4
+                Version caretUpper;
+                if (version.parts[0] == WILDCARD) {
+                    caretUpper = null;
+                } else if (version.parts[0] > 0 || version.parts[1] == WILDCARD) {
+                    caretUpper = new Version(version.parts[0] + 1, 0, 0);
+                } else if (version.parts[1] > 0 || version.parts[2] == WILDCARD) {
+                    caretUpper = new Version(0, version.parts[1] + 1, 0);
+                } else {
+                    caretUpper = new Version(0, 0, version.parts[2] + 1);
+                }
+                return v -> inRange(v, lower, caretUpper);
+        }
+    }
+
+    private static boolean inRange(Version version, Version lower, Version upper) {
+        return version.compareTo(lower) >= 0 && (upper == null || version.compareTo(upper) < 0);
+    }
+
+    private static final class Comparator {
+        private final String operator;
+        private final String text;
+        private final Version version;
+        private final Predicate<Version> predicate;
+
+        private Comparator(String operator, String text, Version version, Predicate<Version> predicate) {
+            this.operator = operator;
+            this.text = text;
+            this.version = version;
+            this.predicate = predicate;
+        }
+    }
+
+    private static final class Version implements Comparable<Version> {
+        private final int[] parts;
+        private final String preRelease;
+
+        private Version(int major, int minor, int patch) {
+            this(new int[] { major, minor, patch }, "");
+        }
+
+        private Version(int[] parts, String preRelease) {
+            this.parts = parts;
+            this.preRelease = preRelease;
+        }
+
+        static Optional<Version> parse(String version) {
+            Matcher matcher = VERSION.matcher(version.trim());
+            if (!matcher.matches()) {
+                return Optional.empty();
+            }
+
+            int[] parts = new int[3];
+            boolean wildcard = false;
+            for (int index = 0; index < parts.length; index++) {
+                String part = matcher.group(index + 1);
+                // the parts after a wildcard are wildcards too
+                wildcard = wildcard || part == null || !Character.isDigit(part.charAt(0));
+                parts[index] = wildcard ? WILDCARD : Integer.parseInt(part);
+            }
+
+            return Optional.of(new Version(parts, Optional.ofNullable(matcher.group(4)).orElse("")));
+        }
+
+        boolean isPartial() {
+            return parts[2] == WILDCARD;
+        }
+
+        Version withZeros() {
+            return new Version(Arrays.stream(parts).map(part -> part == WILDCARD ? 0 : part).toArray(), preRelease);
+        }
+
+        /**
+         * @return the lowest version after all the versions matched by this partial version, for example `1.3.0` for
+         *         `1.2`, or null if it matches all the versions.
+         */
+        Version nextOfPartial() {
+            if (parts[0] == WILDCARD) {
+                return null;
+            } else if (parts[1] == WILDCARD) {
+                return new Version(parts[0] + 1, 0, 0);
+            }
+
+            return new Version(parts[0], parts[1] + 1, 0);
+        }
+
+        @Override
+        public int compareTo(Version other) {
+            for (int index = 0; index < parts.length; index++) {
+                int result = Integer.compare(parts[index], other.parts[index]);
+                if (result != 0) {
+                    return result;
+                }
+            }
+
+            // a pre-release version is lower than the release version
+            if (preRelease.isEmpty() || other.preRelease.isEmpty()) {
+                return Boolean.compare(preRelease.isEmpty(), other.preRelease.isEmpty());
+            }
+
+            String[] identifiers = preRelease.split("\\.");
+            String[] otherIdentifiers = other.preRelease.split("\\.");
+            for (int index = 0; index < Math.min(identifiers.length, otherIdentifiers.length); index++) {
+                int result = compareIdentifiers(identifiers[index], otherIdentifiers[index]);
+                if (result != 0) {
+                    return result;
+                }
+            }
+
+            return Integer.compare(identifiers.length, otherIdentifiers.length);
+        }
+
+        private static int compareIdentifiers(String first, String second) {
+            boolean firstNumeric = first.chars().allMatch(Character::isDigit);
+            boolean secondNumeric = second.chars().allMatch(Character::isDigit);
+            if (firstNumeric && secondNumeric) {
+                return Long.compare(Long.parseLong(first), Long.parseLong(second));
+            } else if (firstNumeric || secondNumeric) {
+                // numeric identifiers are lower than alphanumeric identifiers
+                return firstNumeric ? -1 : 1;
+            }
+
+            return first.compareTo(second);
+        }
+    }
+}
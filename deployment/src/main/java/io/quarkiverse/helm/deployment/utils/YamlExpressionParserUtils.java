@@ -2,7 +2,6 @@ package io.quarkiverse.helm.deployment.utils;
 
 import java.util.Optional;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -61,8 +60,8 @@ public final class YamlExpressionParserUtils {
 
     private static String adaptExpression(String expression) {
         return START_EXPRESSION_TOKEN +
-                expression.replaceAll(Pattern.quote(System.lineSeparator()), SEPARATOR_TOKEN)
-                        .replaceAll(Pattern.quote("\""), SEPARATOR_QUOTES)
+                expression.replace(System.lineSeparator(), SEPARATOR_TOKEN)
+                        .replace("\"", SEPARATOR_QUOTES)
                 + END_EXPRESSION_TOKEN;
     }
 }
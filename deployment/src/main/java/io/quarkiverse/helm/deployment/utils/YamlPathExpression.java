@@ -0,0 +1,229 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A YAMLPath expression that is parsed only once and then shared by all the resources of a chart generation.
+ *
+ * The YAMLPath library parses the path again for every resource, and evaluates every filter such as
+ * `(kind == Deployment && metadata.name == my-app)` by creating new parsers. Instead, the leading filter of the path
+ * is compiled here into simple conditions, so the resources that can't match the path are discarded upfront and the
+ * library only evaluates the path on the remaining resources.
+ *
+ * Only the filters that are made of `==` conditions joined by `&&` are compiled. For any other path, all the resources
+ * might match.
+ */
+public final class YamlPathExpression {
+
+    private static final String DOT = ".";
+    private static final String AND = "&&";
+    private static final String EQUALS = "==";
+    private static final String FILTER_OPEN = "(";
+    private static final String FILTER_CLOSE = ")";
+    private static final String UNSUPPORTED_CHARACTERS = "|!<>'[]*()";
+
+    private final String path;
+    private final List<Condition> conditions;
+    private final String[] target;
+
+    private YamlPathExpression(String path) {
+        this.path = path;
+        this.conditions = parseLeadingFilter(path);
+        this.target = parseTarget(path, !conditions.isEmpty());
+    }
+
+    /**
+     * @return the compiled expression for the given path. The expressions are not cached here, so they are kept by
+     *         whoever compiles them, like the {@link IndexedYamlExpressionParser}, only as long as they are needed.
+     */
+    public static YamlPathExpression compile(String path) {
+        return new YamlPathExpression(path);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return whether the path starts with a filter that could be compiled.
+     */
+    public boolean hasFilter() {
+        return !conditions.isEmpty();
+    }
+
+    /**
+     * @return the value that the given field (for example, `metadata.name`) must be equal to according to the leading
+     *         filter of the path.
+     */
+    public Optional<String> getExpectedValue(String field) {
+        for (Condition condition : conditions) {
+            if (condition.field().equals(field)) {
+                return Optional.of(condition.value());
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * @return false if writing into the path can't change the given field (for example, `metadata.name`) of the resources.
+     *         Otherwise, true.
+     */
+    public boolean mayWrite(String field) {
+        String[] keys = field.split("\\.");
+        for (int index = 0; index < Math.min(keys.length, target.length); index++) {
+            if (containsUnsupportedCharacters(target[index])) {
+                return true;
+            } else if (!target[index].equals(keys[index])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return false if the resource can't match the leading filter of the path. Otherwise, true.
+     */
+    public boolean mayMatch(Map<Object, Object> resource) {
+        for (Condition condition : conditions) {
+            if (!condition.mayMatch(resource)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the resources that might match the leading filter of the path, in the same order. If all of them might
+     *         match, the same list is returned.
+     */
+    public List<Map<Object, Object>> filter(List<Map<Object, Object>> resources) {
+        if (conditions.isEmpty()) {
+            return resources;
+        }
+
+        List<Map<Object, Object>> candidates = new ArrayList<>(resources.size());
+        for (Map<Object, Object> resource : resources) {
+            if (mayMatch(resource)) {
+                candidates.add(resource);
+            }
+        }
+
+        return candidates.size() == resources.size() ? resources : candidates;
+    }
+
+    private static List<Condition> parseLeadingFilter(String path) {
+        String expression = stripLeadingDots(path);
+
+        int end = expression.indexOf(FILTER_CLOSE);
+        // the filter alone would be replaced by the library, so only the filters that are followed by a path are compiled
+        if (!expression.startsWith(FILTER_OPEN) || end < 0 || !expression.startsWith(DOT, end + 1)
+                || end + 2 >= expression.length()) {
+            return Collections.emptyList();
+        }
+
+        List<Condition> conditions = new ArrayList<>();
+        for (String part : expression.substring(1, end).split(AND, -1)) {
+            Condition condition = Condition.parse(part);
+            if (condition == null) {
+                return Collections.emptyList();
+            }
+
+            conditions.add(condition);
+        }
+
+        return Collections.unmodifiableList(conditions);
+    }
+
+    /**
+     * @return the keys that are visited after the leading filter, or the keys of the whole path if it has no filter.
+     */
+    private static String[] parseTarget(String path, boolean hasFilter) {
+        String expression = stripLeadingDots(path);
+        if (hasFilter) {
+            expression = expression.substring(expression.indexOf(FILTER_CLOSE) + 2);
+        }
+
+        String[] keys = expression.split("\\.", -1);
+        for (int index = 0; index < keys.length; index++) {
+            keys[index] = keys[index].trim();
+        }
+
+        return keys;
+    }
+
+    private static String stripLeadingDots(String path) {
+        String expression = path;
+        while (expression.startsWith(DOT)) {
+            expression = expression.substring(1);
+        }
+
+        return expression;
+    }
+
+    private static boolean containsUnsupportedCharacters(String value) {
+        for (int index = 0; index < value.length(); index++) {
+            if (UNSUPPORTED_CHARACTERS.indexOf(value.charAt(index)) >= 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * A `key.subkey == value` condition that is evaluated the same way as the YAMLPath library does.
+     */
+    private record Condition(String field, String[] keys, String value) {
+
+        static Condition parse(String condition) {
+            String[] sides = condition.split(EQUALS, -1);
+            if (sides.length != 2 || containsUnsupportedCharacters(condition)) {
+                return null;
+            }
+
+            String left = sides[0].trim();
+            String right = sides[1].trim();
+            String[] keys = left.split("\\.", -1);
+            for (int index = 0; index < keys.length; index++) {
+                keys[index] = keys[index].trim();
+                if (keys[index].isEmpty()) {
+                    return null;
+                }
+            }
+
+            return new Condition(String.join(DOT, keys), keys, right);
+        }
+
+        boolean mayMatch(Map<Object, Object> resource) {
+            Object current = resource;
+            for (String key : keys) {
+                if (!(current instanceof Map)) {
+                    // lists and scalars are traversed differently by the library, so we can't tell
+                    return true;
+                }
+
+                Map<?, ?> node = (Map<?, ?>) current;
+                if (!node.containsKey(key)) {
+                    return false;
+                }
+
+                current = node.get(key);
+            }
+
+            if (current instanceof Number) {
+                return String.valueOf(current).equals(value);
+            } else if (current instanceof Boolean) {
+                return Boolean.valueOf(value).equals(current);
+            }
+
+            return value.equals(current);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package io.quarkiverse.helm.deployment;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.quarkiverse.helm.deployment.utils.HelmChartManifest;
+
+public class HelmChartUploaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private final List<Integer> statusCodes = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, Map<String, String>> lookups = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile String method;
+    private volatile String path;
+    private volatile String authorization;
+    private volatile byte[] body;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            if ("GET".equals(exchange.getRequestMethod()) || "HEAD".equals(exchange.getRequestMethod())) {
+                // lookups of the chart in the repository
+                Map<String, String> lookup = lookups.get(exchange.getRequestURI().getPath());
+                byte[] response = lookup == null ? new byte[0]
+                        : lookup.getOrDefault("body", "").getBytes(StandardCharsets.UTF_8);
+                if (lookup != null && lookup.containsKey("header")) {
+                    exchange.getResponseHeaders().add("X-Checksum-Sha256", lookup.get("header"));
+                }
+
+                boolean hasBody = "GET".equals(exchange.getRequestMethod()) && response.length > 0;
+                exchange.sendResponseHeaders(lookup == null ? 404 : 200, hasBody ? response.length : -1);
+                if (hasBody) {
+                    try (OutputStream output = exchange.getResponseBody()) {
+                        output.write(response);
+                    }
+                }
+                exchange.close();
+                return;
+            }
+
+            int index = requests.getAndIncrement();
+            method = exchange.getRequestMethod();
+            path = exchange.getRequestURI().getPath();
+            authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            try (InputStream input = exchange.getRequestBody()) {
+                body = input.readAllBytes();
+            }
+
+            int statusCode = index < statusCodes.size() ? statusCodes.get(index) : 201;
+            byte[] response = ("response " + statusCode).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(statusCode, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldRetryTransientErrorsAndStreamTheChart() throws IOException {
+        statusCodes.add(502);
+        statusCodes.add(503);
+        File tarball = Files.writeString(tempDir.resolve("app-1.0.0.tar.gz"), "chart content").toFile();
+
+        HelmChartUploader.pushToHelmRepository(tarball, "quarkus.helm.repository", repository(HelmRepositoryType.NEXUS, 3));
+
+        assertEquals(3, requests.get());
+        assertEquals("PUT", method);
+        assertEquals("/charts/app-1.0.0.tgz", path);
+        assertEquals("Basic " + Base64.getEncoder().encodeToString("user:secret".getBytes(StandardCharsets.UTF_8)),
+                authorization);
+        assertArrayEquals("chart content".getBytes(StandardCharsets.UTF_8), body);
+    }
+
+    @Test
+    public void shouldFailWhenRetriesAreExhausted() throws IOException {
+        statusCodes.add(502);
+        statusCodes.add(502);
+        File tarball = Files.writeString(tempDir.resolve("app-1.0.0.tar.gz"), "chart content").toFile();
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> HelmChartUploader.pushToHelmRepository(tarball, "quarkus.helm.repository",
+                        repository(HelmRepositoryType.CHARTMUSEUM, 1)));
+
+        assertEquals(2, requests.get());
+        assertEquals("POST", method);
+        assertTrue(error.getMessage().contains("response 502"), error.getMessage());
+    }
+
+    @Test
+    public void shouldNotRetryClientErrors() throws IOException {
+        statusCodes.add(401);
+        File tarball = Files.writeString(tempDir.resolve("app-1.0.0.tar.gz"), "chart content").toFile();
+
+        assertThrows(RuntimeException.class,
+                () -> HelmChartUploader.pushToHelmRepository(tarball, "quarkus.helm.repository",
+                        repository(HelmRepositoryType.ARTIFACTORY, 3)));
+
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void shouldReportEveryPushUsingBestEffortPolicy() throws IOException {
+        statusCodes.add(401);
+        List<HelmChartUploader.HelmChartPush> pushes = pushes();
+
+        List<HelmChartUploader.PushResult> results = HelmChartUploader.pushToHelmRepositories(pushes,
+                HelmPushPolicy.BEST_EFFORT, 1);
+
+        assertEquals(2, requests.get());
+        assertEquals(HelmChartUploader.PushStatus.FAILED, results.get(0).status());
+        assertEquals(HelmChartUploader.PushStatus.PUSHED, results.get(1).status());
+    }
+
+    @Test
+    public void shouldSkipPendingPushesUsingFailFastPolicy() throws IOException {
+        statusCodes.add(401);
+        List<HelmChartUploader.HelmChartPush> pushes = pushes();
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> HelmChartUploader.pushToHelmRepositories(pushes, HelmPushPolicy.FAIL_FAST, 1));
+
+        assertEquals(1, requests.get());
+        assertTrue(error.getMessage().contains("SKIPPED"), error.getMessage());
+    }
+
+    @Test
+    public void shouldSkipUnchangedCharts() throws IOException {
+        File tarball = Files.writeString(tempDir.resolve("app-1.0.0.tar.gz"), "chart content").toFile();
+        String digest = HelmChartManifest.digestOf(tarball.toPath());
+        lookups.put("/charts/app-1.0.0.tar.gz", Map.of("header", digest));
+        lookups.put("/charts/app/1.0.0", Map.of("body", "{\"name\":\"app\",\"version\":\"1.0.0\",\"digest\":\"other\"}"));
+        lookups.put("/charts/index.yaml", Map.of("body", "entries:\n  app:\n    - version: 1.0.0\n      digest: " + digest));
+
+        assertEquals(HelmChartUploader.PushStatus.UNCHANGED, HelmChartUploader.pushToHelmRepository(
+                push(tarball, repository(HelmRepositoryType.ARTIFACTORY, 0, true))));
+        assertEquals(HelmChartUploader.PushStatus.UNCHANGED, HelmChartUploader.pushToHelmRepository(
+                push(tarball, repository(HelmRepositoryType.NEXUS, 0, true))));
+        assertEquals(0, requests.get());
+
+        // the digest of chartmuseum is different
+        assertEquals(HelmChartUploader.PushStatus.PUSHED, HelmChartUploader.pushToHelmRepository(
+                push(tarball, repository(HelmRepositoryType.CHARTMUSEUM, 0, true))));
+        assertEquals(1, requests.get());
+    }
+
+    private HelmChartUploader.HelmChartPush push(File tarball, HelmRepository repository) {
+        return new HelmChartUploader.HelmChartPush("kubernetes", "app", "1.0.0", tarball, "quarkus.helm.repository",
+                repository);
+    }
+
+    private List<HelmChartUploader.HelmChartPush> pushes() throws IOException {
+        File kubernetes = Files.writeString(tempDir.resolve("app-1.0.0.tar.gz"), "kubernetes chart").toFile();
+        File openshift = Files.writeString(Files.createDirectories(tempDir.resolve("openshift"))
+                .resolve("app-1.0.0.tar.gz"), "openshift chart").toFile();
+        HelmRepository repository = repository(HelmRepositoryType.CHARTMUSEUM, 0);
+        return List.of(
+                new HelmChartUploader.HelmChartPush("kubernetes", "app", "1.0.0", kubernetes, "quarkus.helm.repository",
+                        repository),
+                new HelmChartUploader.HelmChartPush("openshift", "app", "1.0.0", openshift, "quarkus.helm.repository",
+                        repository));
+    }
+
+    private HelmRepository repository(HelmRepositoryType type, int maxRetries) {
+        return repository(type, maxRetries, false);
+    }
+
+    private HelmRepository repository(HelmRepositoryType type, int maxRetries, boolean skipIfUnchanged) {
+        String url = "http://localhost:" + server.getAddress().getPort() + "/charts";
+        return new HelmRepository() {
+            @Override
+            public boolean push() {
+                return true;
+            }
+
+            @Override
+            public Optional<List<String>> deploymentTarget() {
+                return Optional.of(List.of("kubernetes"));
+            }
+
+            @Override
+            public Optional<HelmRepositoryType> type() {
+                return Optional.of(type);
+            }
+
+            @Override
+            public Optional<String> url() {
+                return Optional.of(url);
+            }
+
+            @Override
+            public Optional<String> username() {
+                return Optional.of("user");
+            }
+
+            @Override
+            public Optional<String> password() {
+                return Optional.of("secret");
+            }
+
+            @Override
+            public Duration connectTimeout() {
+                return Duration.ofSeconds(5);
+            }
+
+            @Override
+            public Duration requestTimeout() {
+                return Duration.ofSeconds(10);
+            }
+
+            @Override
+            public int maxRetries() {
+                return maxRetries;
+            }
+
+            @Override
+            public Duration retryBackoff() {
+                return Duration.ofMillis(10);
+            }
+
+            @Override
+            public boolean skipIfUnchanged() {
+                return skipIfUnchanged;
+            }
+        };
+    }
+}
@@ -0,0 +1,212 @@
+package io.quarkiverse.helm.deployment;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.sun.net.httpserver.HttpServer;
+
+import io.dekorate.utils.Serialization;
+import io.quarkiverse.helm.deployment.utils.HelmChartManifest;
+import io.quarkiverse.helm.model.Chart;
+
+public class HelmDependencyResolverTest {
+
+    private static final byte[] POSTGRESQL = "postgresql chart".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] REDIS = "redis chart".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        String index = "apiVersion: v1\n"
+                + "entries:\n"
+                + "  postgresql:\n"
+                + "    - version: 12.2.0-rc.1\n"
+                + "      urls: [charts/postgresql-12.2.0-rc.1.tgz]\n"
+                + "    - version: 12.1.2\n"
+                + "      digest: " + HelmChartManifest.digestOf(POSTGRESQL) + "\n"
+                + "      urls: [charts/postgresql-12.1.2.tgz]\n"
+                + "    - version: 12.0.0\n"
+                + "      urls: [charts/postgresql-12.0.0.tgz]\n"
+                + "  redis:\n"
+                + "    - version: 17.3.0\n"
+                + "      urls: [charts/redis-17.3.0.tgz]\n";
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            requests.add(exchange.getRequestURI().getPath());
+            byte[] response;
+            if (exchange.getRequestURI().getPath().endsWith("index.yaml")) {
+                response = index.getBytes(StandardCharsets.UTF_8);
+            } else {
+                response = exchange.getRequestURI().getPath().contains("redis") ? REDIS : POSTGRESQL;
+                // slow downloads, so the concurrent resolutions overlap
+                sleep(200);
+            }
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void shouldComputeTheChartLockDigestTheSameWayAsHelm() {
+        Chart chart = Serialization.unmarshal("apiVersion: v2\n"
+                + "name: app\n"
+                + "version: 1.0.0\n"
+                + "dependencies:\n"
+                + "  - name: alpine\n"
+                + "    version: 0.1.0\n"
+                + "    repository: http://localhost:8879/charts\n", Chart.class);
+        Map<String, Object> lock = new LinkedHashMap<>();
+        lock.put("name", "alpine");
+        lock.put("version", "0.1.0");
+        lock.put("repository", "http://localhost:8879/charts");
+
+        // the digest that Helm computes for the same dependencies (see TestHashReq in the Helm resolver)
+        assertEquals("sha256:fb239e836325c5fa14b29d1540a13b7d3ba13151b67fe719f820e0ef6d66aaaf",
+                HelmDependencyResolver.digestOf(chart.getDependencies(), List.of(lock)));
+    }
+
+    @Test
+    public void shouldResolveDependenciesUsingTheLocalCache() throws IOException {
+        Path cache = tempDir.resolve("cache");
+        Path chart = createChart("first", "~12.1");
+
+        Path chartLock = new HelmDependencyResolver(cache, false, true, 1).resolve(chart);
+
+        assertArrayEquals(POSTGRESQL, Files.readAllBytes(chart.resolve("charts/postgresql-12.1.2.tgz")));
+        assertEquals(List.of("/stable/index.yaml", "/stable/charts/postgresql-12.1.2.tgz"), requests);
+        Map<String, Object> lock = Serialization.unmarshal(Files.readString(chartLock),
+                new TypeReference<Map<String, Object>>() {
+                });
+        assertEquals(List.of(Map.of("name", "postgresql", "version", "12.1.2", "repository", repository())),
+                lock.get("dependencies"));
+        assertEquals("1970-01-01T00:00:00Z", lock.get("generated"));
+
+        // the exact versions held by the cache are resolved without requests
+        requests.clear();
+        new HelmDependencyResolver(cache, false, false, 1).resolve(createChart("second", "12.1.2"));
+        assertEquals(List.of(), requests);
+
+        // the version ranges are resolved offline using the cached index
+        Path offline = createChart("offline", ">=12.0.0 <13");
+        new HelmDependencyResolver(cache, true, false, 1).resolve(offline);
+        assertArrayEquals(POSTGRESQL, Files.readAllBytes(offline.resolve("charts/postgresql-12.1.2.tgz")));
+        assertEquals(List.of(), requests);
+    }
+
+    @Test
+    public void shouldDownloadEveryDependencyOnceWhenResolvingConcurrently() throws Exception {
+        Path cache = tempDir.resolve("cache");
+        List<Callable<Path>> resolutions = new ArrayList<>();
+        for (String target : List.of("kubernetes", "openshift", "knative")) {
+            Path chart = createChart(target, "~12.1");
+            Files.writeString(chart.resolve("Chart.yaml"), "  - name: redis\n    version: \"17.x\"\n    repository: "
+                    + repository() + "\n", StandardOpenOption.APPEND);
+            resolutions.add(() -> new HelmDependencyResolver(cache, false, false, 2).resolve(chart));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(resolutions.size());
+        try {
+            for (Future<Path> resolution : executor.invokeAll(resolutions)) {
+                resolution.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (String target : List.of("kubernetes", "openshift", "knative")) {
+            assertArrayEquals(POSTGRESQL, Files.readAllBytes(tempDir.resolve(target + "/charts/postgresql-12.1.2.tgz")));
+            assertArrayEquals(REDIS, Files.readAllBytes(tempDir.resolve(target + "/charts/redis-17.3.0.tgz")));
+        }
+
+        assertEquals(List.of("/stable/charts/postgresql-12.1.2.tgz", "/stable/charts/redis-17.3.0.tgz",
+                "/stable/index.yaml"), requests.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shouldFailOfflineWhenTheCacheDoesNotHoldTheDependency() throws IOException {
+        Path chart = createChart("chart", "12.1.2");
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> new HelmDependencyResolver(tempDir.resolve("cache"), true, false, 1).resolve(chart));
+
+        assertTrue(error.getMessage().contains("offline"), error.getMessage());
+        assertEquals(List.of(), requests);
+    }
+
+    @Test
+    public void shouldPackageLocalChartFolders() throws IOException {
+        Path library = Files.createDirectories(tempDir.resolve("library/templates"));
+        Files.writeString(library.resolveSibling("Chart.yaml"), "apiVersion: v2\nname: library\nversion: 1.0.0\n");
+        Files.writeString(library.resolve("_helpers.tpl"), "{{- define \"library.name\" -}}{{- end -}}\n");
+        Path chart = Files.createDirectories(tempDir.resolve("chart"));
+        Files.writeString(chart.resolve("Chart.yaml"), "apiVersion: v2\nname: app\nversion: 1.0.0\n"
+                + "dependencies:\n  - name: library\n    version: ^1.0.0\n    repository: file://../library\n");
+
+        new HelmDependencyResolver(tempDir.resolve("cache"), true, false, 1).resolve(chart);
+
+        assertTrue(Files.size(chart.resolve("charts/library-1.0.0.tgz")) > 0);
+    }
+
+    private Path createChart(String name, String version) throws IOException {
+        Path chart = Files.createDirectories(tempDir.resolve(name));
+        Files.writeString(chart.resolve("Chart.yaml"), "apiVersion: v2\nname: app\nversion: 1.0.0\n"
+                + "dependencies:\n  - name: postgresql\n    version: \"" + version + "\"\n    repository: " + repository()
+                + "\n");
+        return chart;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String repository() {
+        return "http://localhost:" + server.getAddress().getPort() + "/stable";
+    }
+}
@@ -0,0 +1,288 @@
+package io.quarkiverse.helm.deployment;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.quarkiverse.helm.deployment.utils.HelmChartManifest;
+
+public class HelmOciUploaderTest {
+
+    private static final String TOKEN = "Bearer registry-token";
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    // a minimal registry that implements the chunked uploads of the OCI distribution API
+    private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+    private final Map<String, ByteArrayOutputStream> uploads = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> manifests = new ConcurrentHashMap<>();
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger patches = new AtomicInteger();
+    // the PATCH request after which the connection is dropped, once the chunk is consumed
+    private volatile int dropConnectionAfterPatch;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/token", exchange -> {
+            assertTrue(exchange.getRequestURI().getQuery().contains("scope=repository:charts/app:pull,push"));
+            respond(exchange, 200, "{\"token\":\"registry-token\"}");
+        });
+        server.createContext("/v2/", exchange -> {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            if (!TOKEN.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                exchange.getResponseHeaders().add("WWW-Authenticate", "Bearer realm=\"http://localhost:"
+                        + server.getAddress().getPort() + "/token\",service=\"registry\"");
+                respond(exchange, 401, "");
+                return;
+            }
+
+            requests.add(method + " " + path);
+            byte[] body;
+            try (InputStream input = exchange.getRequestBody()) {
+                body = input.readAllBytes();
+            }
+
+            if (path.contains("/blobs/uploads/")) {
+                String id = path.substring(path.lastIndexOf('/') + 1);
+                if ("POST".equals(method)) {
+                    id = UUID.randomUUID().toString();
+                    uploads.put(id, new ByteArrayOutputStream());
+                } else if ("PATCH".equals(method)) {
+                    ByteArrayOutputStream upload = uploads.get(id);
+                    assertEquals(upload.size() + "-" + (upload.size() + body.length - 1),
+                            exchange.getRequestHeaders().getFirst("Content-Range"));
+                    upload.write(body);
+                    if (patches.incrementAndGet() == dropConnectionAfterPatch) {
+                        exchange.close();
+                        return;
+                    }
+                } else if ("GET".equals(method)) {
+                    exchange.getResponseHeaders().add("Range", "0-" + (uploads.get(id).size() - 1));
+                    exchange.getResponseHeaders().add("Location", "/v2/charts/app/blobs/uploads/" + id);
+                    respond(exchange, 204, "");
+                    return;
+                } else {
+                    String digest = exchange.getRequestURI().getQuery().replace("digest=", "");
+                    byte[] content = uploads.remove(id).toByteArray();
+                    assertEquals(digest, "sha256:" + HelmChartManifest.digestOf(content));
+                    blobs.put(digest, content);
+                    respond(exchange, 201, "");
+                    return;
+                }
+
+                exchange.getResponseHeaders().add("Location", "/v2/charts/app/blobs/uploads/" + id);
+                respond(exchange, 202, "");
+            } else if (path.contains("/blobs/")) {
+                respond(exchange, blobs.containsKey(path.substring(path.lastIndexOf('/') + 1)) ? 200 : 404, "");
+            } else if ("PUT".equals(method)) {
+                manifests.put(path, body);
+                respond(exchange, 201, "");
+            } else {
+                byte[] manifest = manifests.get(path);
+                if (manifest != null) {
+                    exchange.getResponseHeaders().add("Docker-Content-Digest",
+                            "sha256:" + HelmChartManifest.digestOf(manifest));
+                }
+                respond(exchange, manifest != null ? 200 : 404, "");
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldPushChartInChunksAndSkipExistingBlobs() throws IOException {
+        File tarball = createChart();
+        HelmRepository repository = repository(false);
+
+        assertEquals(HelmChartUploader.PushStatus.PUSHED, push(tarball, repository));
+
+        String chartDigest = "sha256:" + HelmChartManifest.digestOf(tarball.toPath());
+        assertArrayEquals(Files.readAllBytes(tarball.toPath()), blobs.get(chartDigest));
+        assertTrue(requests.stream().filter(r -> r.startsWith("PATCH")).count() > 2, requests.toString());
+        String manifest = new String(manifests.get("/v2/charts/app/manifests/1.0.0_build"), StandardCharsets.UTF_8);
+        assertTrue(manifest.contains(HelmOciUploader.CONFIG_MEDIA_TYPE), manifest);
+        assertTrue(manifest.contains("\"mediaType\":\"" + HelmOciUploader.CHART_MEDIA_TYPE + "\",\"digest\":\""
+                + chartDigest + "\""), manifest);
+        String config = blobs.entrySet().stream().filter(e -> !e.getKey().equals(chartDigest))
+                .map(e -> new String(e.getValue(), StandardCharsets.UTF_8)).findFirst().orElseThrow();
+        assertEquals("{\"apiVersion\":\"v2\",\"name\":\"app\",\"version\":\"1.0.0+build\"}", config);
+
+        // the blobs are already in the registry, so only the manifest is uploaded again
+        requests.clear();
+        assertEquals(HelmChartUploader.PushStatus.PUSHED, push(tarball, repository));
+        assertTrue(requests.stream().noneMatch(r -> r.startsWith("POST") || r.startsWith("PATCH")), requests.toString());
+        assertTrue(requests.contains("PUT /v2/charts/app/manifests/1.0.0_build"), requests.toString());
+    }
+
+    @Test
+    public void shouldResumeUploadWhenConnectionIsDroppedAfterChunk() throws IOException {
+        File tarball = createChart();
+        dropConnectionAfterPatch = 2;
+
+        assertEquals(HelmChartUploader.PushStatus.PUSHED, push(tarball, repository(false, 1)));
+
+        String chartDigest = "sha256:" + HelmChartManifest.digestOf(tarball.toPath());
+        assertArrayEquals(Files.readAllBytes(tarball.toPath()), blobs.get(chartDigest));
+        assertTrue(requests.stream().anyMatch(r -> r.startsWith("GET /v2/charts/app/blobs/uploads/")), requests.toString());
+    }
+
+    @Test
+    public void shouldSkipUnchangedManifest() throws IOException {
+        File tarball = createChart();
+        assertEquals(HelmChartUploader.PushStatus.PUSHED, push(tarball, repository(true)));
+
+        requests.clear();
+        assertEquals(HelmChartUploader.PushStatus.UNCHANGED, push(tarball, repository(true)));
+        assertEquals(List.of("HEAD /v2/charts/app/manifests/1.0.0_build"), requests);
+    }
+
+    @Test
+    public void shouldGetRegistryAndRepositoryNameFromUrl() {
+        assertEquals("https://registry.example.com:5000/",
+                HelmOciUploader.getRegistry("oci://registry.example.com:5000/charts").toString());
+        assertEquals("charts/team/app", HelmOciUploader.getRepositoryName("oci://registry.example.com/charts/team/", "app"));
+        assertEquals("app", HelmOciUploader.getRepositoryName("http://localhost:5000", "app"));
+    }
+
+    private HelmChartUploader.PushStatus push(File tarball, HelmRepository repository) {
+        HelmChartUploader.HelmChartPush push = new HelmChartUploader.HelmChartPush("kubernetes", "app", "1.0.0+build",
+                tarball, "quarkus.helm.repository", repository);
+        return new HelmOciUploader(HelmChartUploader.getClient(repository), repository, 64).push(push);
+    }
+
+    private File createChart() throws IOException {
+        File tarball = tempDir.resolve("app-1.0.0+build.tar.gz").toFile();
+        try (OutputStream output = Files.newOutputStream(tarball.toPath());
+                TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(output))) {
+            addEntry(tar, "app/Chart.yaml", "apiVersion: v2\nname: app\nversion: 1.0.0+build\n");
+            addEntry(tar, "app/charts/dependency/Chart.yaml", "apiVersion: v2\nname: dependency\nversion: 2.0.0\n");
+            addEntry(tar, "app/values.yaml", "app:\n  image: app:1.0.0\n");
+        }
+
+        return tarball;
+    }
+
+    private static void addEntry(TarArchiveOutputStream tar, String name, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(bytes.length);
+        tar.putArchiveEntry(entry);
+        tar.write(bytes);
+        tar.closeArchiveEntry();
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+        byte[] response = body.getBytes(StandardCharsets.UTF_8);
+        boolean hasBody = response.length > 0 && !"HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(statusCode, hasBody ? response.length : -1);
+        if (hasBody) {
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        }
+        exchange.close();
+    }
+
+    private HelmRepository repository(boolean skipIfUnchanged) {
+        return repository(skipIfUnchanged, 0);
+    }
+
+    private HelmRepository repository(boolean skipIfUnchanged, int maxRetries) {
+        String url = "http://localhost:" + server.getAddress().getPort() + "/charts";
+        return new HelmRepository() {
+            @Override
+            public boolean push() {
+                return true;
+            }
+
+            @Override
+            public Optional<List<String>> deploymentTarget() {
+                return Optional.of(List.of("kubernetes"));
+            }
+
+            @Override
+            public Optional<HelmRepositoryType> type() {
+                return Optional.of(HelmRepositoryType.OCI);
+            }
+
+            @Override
+            public Optional<String> url() {
+                return Optional.of(url);
+            }
+
+            @Override
+            public Optional<String> username() {
+                return Optional.of("user");
+            }
+
+            @Override
+            public Optional<String> password() {
+                return Optional.of("secret");
+            }
+
+            @Override
+            public Duration connectTimeout() {
+                return Duration.ofSeconds(5);
+            }
+
+            @Override
+            public Duration requestTimeout() {
+                return Duration.ofSeconds(10);
+            }
+
+            @Override
+            public int maxRetries() {
+                return maxRetries;
+            }
+
+            @Override
+            public Duration retryBackoff() {
+                return Duration.ofMillis(10);
+            }
+
+            @Override
+            public boolean skipIfUnchanged() {
+                return skipIfUnchanged;
+            }
+        };
+    }
+}
@@ -1,21 +1,28 @@
 package io.quarkiverse.helm.deployment;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import io.dekorate.project.BuildInfo;
 import io.dekorate.project.Project;
+import io.dekorate.utils.Serialization;
+import io.quarkiverse.helm.spi.HelmChartBuildItem;
 
 public class QuarkusHelmWriterSessionListenerTest {
 
@@ -164,6 +171,97 @@ public class QuarkusHelmWriterSessionListenerTest {
                 "Other Helm directives should be preserved. Actual content:\n" + resultContent);
     }
 
+    @Test
+    public void shouldCollectChartModelWithoutValuesSchemaFile() throws IOException {
+        QuarkusHelmWriterSessionListener listener = new QuarkusHelmWriterSessionListener();
+
+        String chartName = "test-chart-model";
+        Path inputDir = tempDir.resolve("input-model");
+        Path outputDir = tempDir.resolve("output-model");
+        Files.createDirectories(inputDir);
+        Files.createDirectories(outputDir);
+
+        HelmChartBuildItem.Builder chartModel = HelmChartBuildItem.builder().withDeploymentTarget("kubernetes");
+        listener.writeHelmFiles(
+                chartName,
+                buildProject(inputDir),
+                new TestHelmChartConfig(chartName, inputDir),
+                Collections.emptyList(),
+                inputDir,
+                outputDir,
+                buildGeneratedFiles(),
+                buildAdditionalTemplates(),
+                Collections.emptyMap(),
+                Collections.emptyList(),
+                chartModel);
+
+        // the values schema file is not created, so the chart has no values schema
+        HelmChartBuildItem chart = chartModel.build();
+        Path chartDir = outputDir.resolve(chartName);
+        assertFalse(Files.exists(chartDir.resolve("values.schema.json")));
+        assertNull(chart.getValuesSchema());
+        assertEquals(chartName, chart.getName());
+        assertEquals(Optional.empty(), chart.getNotes());
+        assertEquals(Serialization.unmarshal(Files.readString(chartDir.resolve("values.yaml")), Map.class),
+                chart.getValues());
+        assertEquals(Set.of("deployment.yaml", "clusterrolebinding.yaml"), chart.getTemplates().keySet());
+        for (Map.Entry<String, String> template : chart.getTemplates().entrySet()) {
+            assertEquals(Files.readString(chartDir.resolve("templates").resolve(template.getKey())), template.getValue());
+        }
+    }
+
+    @Test
+    public void shouldMergeUserValuesSchemaFile() throws IOException {
+        QuarkusHelmWriterSessionListener listener = new QuarkusHelmWriterSessionListener();
+
+        String chartName = "test-chart-schema";
+        Path inputDir = tempDir.resolve("input-schema");
+        Path outputDir = tempDir.resolve("output-schema");
+        Files.createDirectories(inputDir);
+        Files.createDirectories(outputDir);
+        Files.writeString(inputDir.resolve("values.schema.json"), "{\n" +
+                "  \"$id\" : \"https://example.com/values.schema.json\",\n" +
+                "  \"title\" : \"User values\",\n" +
+                "  \"properties\" : {\n" +
+                "    \"extra\" : {\n" +
+                "      \"type\" : \"string\",\n" +
+                "      \"description\" : \"user\"\n" +
+                "    }\n" +
+                "  }\n" +
+                "}\n");
+
+        HelmChartBuildItem.Builder chartModel = HelmChartBuildItem.builder().withDeploymentTarget("kubernetes");
+        listener.writeHelmFiles(
+                chartName,
+                buildProject(inputDir),
+                new TestHelmChartConfig(chartName, inputDir) {
+                    @Override
+                    public boolean createValuesSchemaFile() {
+                        return true;
+                    }
+                },
+                Collections.emptyList(),
+                inputDir,
+                outputDir,
+                buildGeneratedFiles(),
+                buildAdditionalTemplates(),
+                Collections.emptyMap(),
+                Collections.emptyList(),
+                chartModel);
+
+        // the user values win, and the keys that are not in the model are kept in the file
+        Map<String, Object> schema = Serialization.unmarshal(
+                Files.readString(outputDir.resolve(chartName).resolve("values.schema.json")), Map.class);
+        assertEquals("https://example.com/values.schema.json", schema.get("$id"));
+        assertEquals("User values", schema.get("title"));
+        assertEquals("object", schema.get("type"));
+        assertTrue(((Map<?, ?>) schema.get("properties")).containsKey("extra"));
+
+        HelmChartBuildItem chart = chartModel.build();
+        assertEquals("User values", chart.getValuesSchema().getTitle());
+        assertEquals("user", chart.getValuesSchema().getProperties().get("extra").getDescription());
+    }
+
     private Map<String, byte[]> buildGeneratedFiles() {
         Map<String, byte[]> files = new LinkedHashMap<>();
         String deploymentYaml = "apiVersion: apps/v1\n" +
@@ -306,6 +404,21 @@ public class QuarkusHelmWriterSessionListenerTest {
             return Collections.emptyMap();
         }
 
+        @Override
+        public HelmDependencyResolution dependencyResolution() {
+            return HelmDependencyResolution.NATIVE;
+        }
+
+        @Override
+        public Optional<String> dependencyCacheDirectory() {
+            return Optional.empty();
+        }
+
+        @Override
+        public boolean dependencyOffline() {
+            return false;
+        }
+
         @Override
         public Optional<String> type() {
             return Optional.empty();
@@ -336,6 +449,21 @@ public class QuarkusHelmWriterSessionListenerTest {
             return false;
         }
 
+        @Override
+        public Optional<Integer> compressionLevel() {
+            return Optional.empty();
+        }
+
+        @Override
+        public int compressionThreads() {
+            return 1;
+        }
+
+        @Override
+        public boolean reproducibleTarFile() {
+            return false;
+        }
+
         @Override
         public boolean createValuesSchemaFile() {
             return false;
@@ -399,6 +527,21 @@ public class QuarkusHelmWriterSessionListenerTest {
             return "helm";
         }
 
+        @Override
+        public boolean incremental() {
+            return false;
+        }
+
+        @Override
+        public Optional<Integer> parallelism() {
+            return Optional.empty();
+        }
+
+        @Override
+        public boolean generationReport() {
+            return false;
+        }
+
         @Override
         public HelmRepository repository() {
             return new HelmRepository() {
@@ -408,7 +551,7 @@ public class QuarkusHelmWriterSessionListenerTest {
                 }
 
                 @Override
-                public Optional<String> deploymentTarget() {
+                public Optional<List<String>> deploymentTarget() {
                     return Optional.empty();
                 }
 
@@ -431,9 +574,44 @@ public class QuarkusHelmWriterSessionListenerTest {
                 public Optional<String> password() {
                     return Optional.empty();
                 }
+
+                @Override
+                public Duration connectTimeout() {
+                    return Duration.ofSeconds(10);
+                }
+
+                @Override
+                public Duration requestTimeout() {
+                    return Duration.ofMinutes(5);
+                }
+
+                @Override
+                public int maxRetries() {
+                    return 3;
+                }
+
+                @Override
+                public Duration retryBackoff() {
+                    return Duration.ofSeconds(1);
+                }
+
+                @Override
+                public boolean skipIfUnchanged() {
+                    return false;
+                }
             };
         }
 
+        @Override
+        public Map<String, HelmRepository> repositories() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public HelmPushPolicy pushPolicy() {
+            return HelmPushPolicy.FAIL_FAST;
+        }
+
         @Override
         public boolean mapSystemProperties() {
             return true;
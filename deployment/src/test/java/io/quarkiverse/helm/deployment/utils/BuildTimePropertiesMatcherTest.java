@@ -0,0 +1,37 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class BuildTimePropertiesMatcherTest {
+
+    @Test
+    public void shouldMatchNamesPrefixesAndRegularExpressions() {
+        BuildTimePropertiesMatcher matcher = BuildTimePropertiesMatcher.of(List.of("# a comment", "",
+                "quarkus.cache.enabled", "quarkus.log.", "quarkus.datasource.(.+).db-kind", "quarkus.application.(.+)"));
+
+        assertTrue(matcher.matches("quarkus.cache.enabled"));
+        assertFalse(matcher.matches("quarkus.cache.enabled.other"));
+        assertTrue(matcher.matches("quarkus.log.level"));
+        assertTrue(matcher.matches("quarkus.log.category.\"io.quarkus\".level"));
+        assertFalse(matcher.matches("quarkus.logging"));
+        assertTrue(matcher.matches("quarkus.datasource.users.db-kind"));
+        assertFalse(matcher.matches("quarkus.datasource.users.username"));
+        assertTrue(matcher.matches("quarkus.application.name"));
+        assertFalse(matcher.matches("# a comment"));
+        assertFalse(matcher.matches(""));
+    }
+
+    @Test
+    public void shouldReadDefaultBuildTimeList() {
+        BuildTimePropertiesMatcher matcher = BuildTimePropertiesMatcher.getDefault();
+
+        assertTrue(matcher.matches("quarkus.datasource.db-kind"));
+        assertTrue(matcher.matches("quarkus.datasource.users.devservices.enabled"));
+        assertFalse(matcher.matches("quarkus.http.port"));
+    }
+}
@@ -0,0 +1,107 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HelmTarArchiverTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldCreateSameTarballForSameContent() throws IOException {
+        Path dependency = Files.writeString(tempDir.resolve("dependency.tgz"), "dependency");
+
+        File first = createReproducibleTarBall("first.tar.gz", dependency);
+        Files.setLastModifiedTime(dependency, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        File second = createReproducibleTarBall("second.tar.gz", dependency);
+
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+
+        List<String> names = new ArrayList<>();
+        try (InputStream input = Files.newInputStream(first.toPath());
+                TarArchiveInputStream tar = new TarArchiveInputStream(new GzipCompressorInputStream(input))) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextEntry()) != null) {
+                names.add(entry.getName());
+                assertEquals(0, entry.getLongUserId());
+                assertEquals(0, entry.getLongGroupId());
+                assertEquals(TarArchiveEntry.DEFAULT_FILE_MODE, entry.getMode());
+            }
+        }
+
+        assertEquals(List.of("chart/Chart.yaml", "chart/charts/dependency.tgz", "chart/templates/deployment.yaml",
+                "chart/values.yaml"), names);
+    }
+
+    @Test
+    public void shouldStopCompressionThreadsWhenWritingFails() throws Exception {
+        Map<String, HelmTarArchiver.Content> entries = Map.of("chart/values.yaml", new HelmTarArchiver.Content() {
+            @Override
+            public long size() {
+                return 1024 * 1024;
+            }
+
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                // enough content to start compressing some blocks before failing
+                output.write(new byte[512 * 1024]);
+                throw new IOException("broken");
+            }
+        });
+
+        assertThrows(IOException.class, () -> HelmTarArchiver.createReproducibleTarBall(
+                tempDir.resolve("broken.tar.gz").toFile(), entries, "tar.gz", Deflater.DEFAULT_COMPRESSION, 2));
+
+        // the threads are interrupted when the gzip stream is closed, so they stop shortly after
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (hasCompressionThreads() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertFalse(hasCompressionThreads());
+    }
+
+    private static boolean hasCompressionThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.isAlive() && thread.getName().startsWith("helm-gzip-"));
+    }
+
+    private File createReproducibleTarBall(String fileName, Path dependency) throws IOException {
+        // entries in a different order than the expected one
+        Map<String, HelmTarArchiver.Content> entries = new LinkedHashMap<>();
+        entries.put("chart/values.yaml", content("app:\n  replicas: 1\n"));
+        entries.put("chart/templates/deployment.yaml", content("kind: Deployment\n"));
+        entries.put("chart/charts/dependency.tgz", HelmTarArchiver.Content.of(dependency));
+        entries.put("chart/Chart.yaml", content("name: chart\n"));
+
+        return HelmTarArchiver.createReproducibleTarBall(tempDir.resolve(fileName).toFile(), entries, "tar.gz",
+                Deflater.DEFAULT_COMPRESSION, 1);
+    }
+
+    private static HelmTarArchiver.Content content(String content) {
+        return HelmTarArchiver.Content.of(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
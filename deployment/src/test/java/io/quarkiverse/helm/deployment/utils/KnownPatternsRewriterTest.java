@@ -0,0 +1,88 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+class KnownPatternsRewriterTest {
+
+    private static final String[] TOKENS = { "\"", "{{", "}}", ":START:", ":END:", ":DOUBLE_QUOTES", ":LINE_SEPARATOR:",
+            ":", "\\", "\n", " ", "\t", "a", "value", ".Values.app.name" };
+
+    @Test
+    void shouldRewriteHelmExpressions() {
+        String content = "image: \":START:{{ .Values.app.image }}:END:\"\n"
+                + "command: \":START:{{ .Values.app.command | quote }}:END:\"\n"
+                + "name: \"{{ .Release.Name }}\"\n"
+                + "value: \":START::DOUBLE_QUOTESa:DOUBLE_QUOTES:LINE_SEPARATOR:b:END:\"\n"
+                + "long: \"first \\\n    \\second\"\n";
+
+        assertEquals("image: {{ .Values.app.image }}\n"
+                + "command: {{ .Values.app.command | quote }}\n"
+                + "name: {{ .Release.Name }}\n"
+                + "value: \"a\"" + System.lineSeparator() + "b\n"
+                + "long: \"first second\"\n",
+                KnownPatternsRewriter.rewrite(content));
+    }
+
+    @Test
+    void shouldBehaveAsTheChainedReplacements() {
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 20_000; iteration++) {
+            StringBuilder content = new StringBuilder();
+            int tokens = random.nextInt(20);
+            for (int index = 0; index < tokens; index++) {
+                content.append(TOKENS[random.nextInt(TOKENS.length)]);
+            }
+
+            assertEquals(chainedReplacements(content.toString()), KnownPatternsRewriter.rewrite(content),
+                    "Unexpected result for: " + content);
+        }
+    }
+
+    @Test
+    void shouldWriteIntoAppendable() throws IOException {
+        StringWriter writer = new StringWriter();
+        KnownPatternsRewriter rewriter = KnownPatternsRewriter.to(writer);
+        // patterns split across several writes
+        rewriter.append("a: \":STA");
+        rewriter.append("RT:{{ .Values.a }}:END");
+        rewriter.append(':');
+        rewriter.append("\"\nb: \\");
+        rewriter.finish();
+
+        assertEquals("a: {{ .Values.a }}\nb: \\", writer.toString());
+    }
+
+    @Test
+    void shouldLeaveOutputOpenWhenAppending() throws IOException {
+        StringWriter output = new StringWriter();
+        try (Writer writer = KnownPatternsRewriter.appendingWriter(output)) {
+            writer.write("a: \"{{ .Values.a }}");
+        }
+
+        try (Writer writer = KnownPatternsRewriter.appendingWriter(output)) {
+            writer.write("\"\nb: \":START:{{ .Values.b }}:END:\"");
+        }
+
+        // the pending characters of the first writer are written when it's closed, so the patterns don't span writers
+        assertEquals("a: {{ .Values.a }}\"\nb: {{ .Values.b }}", output.toString());
+    }
+
+    private static String chainedReplacements(String content) {
+        return content
+                .replaceAll(Pattern.quote("\"{{"), "{{")
+                .replaceAll(Pattern.quote("}}\""), "}}")
+                .replaceAll("\":START:", "")
+                .replaceAll(":END:\"", "")
+                .replaceAll(":DOUBLE_QUOTES", "\"")
+                .replaceAll(":LINE_SEPARATOR:", System.lineSeparator())
+                .replaceAll("\\\\\\n(\\s)*\\\\", "");
+    }
+}
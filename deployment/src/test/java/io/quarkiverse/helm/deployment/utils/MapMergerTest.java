@@ -0,0 +1,58 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class MapMergerTest {
+
+    @Test
+    public void shouldMergeUserValuesIntoGeneratedValues() {
+        Map<String, Object> generated = Map.of(
+                "app", Map.of("image", "app:1.0", "port", 8080),
+                "keywords", List.of("generated"));
+        Map<String, Object> user = Map.of(
+                "app", Map.of("image", "app:2.0", "extra", true),
+                "keywords", List.of("user"),
+                "other", "value");
+
+        Map<String, Object> merged = MapMerger.merge(generated, user, MapMerger.ListStrategy.REPLACE, "values.dev.yaml");
+
+        assertEquals(Map.of(
+                "app", Map.of("image", "app:2.0", "port", 8080, "extra", true),
+                "keywords", List.of("user"),
+                "other", "value"), merged);
+        // the given maps are not modified
+        assertEquals(Map.of("image", "app:1.0", "port", 8080), generated.get("app"));
+    }
+
+    @Test
+    public void shouldAppendMissingListItems() {
+        Map<String, Object> merged = MapMerger.merge(Map.of("keywords", List.of("a", "b")),
+                Map.of("keywords", List.of("b", "c")), MapMerger.ListStrategy.APPEND, "Chart.yaml");
+
+        assertEquals(List.of("a", "b", "c"), merged.get("keywords"));
+    }
+
+    @Test
+    public void shouldKeepGeneratedOrder() {
+        Map<String, Object> generated = new HashMap<>();
+        generated.put("b", 1);
+        generated.put("a", 2);
+        Map<String, Object> user = new HashMap<>();
+        user.put("c", 3);
+        user.put("a", 4);
+
+        Map<String, Object> merged = MapMerger.merge(generated, user, MapMerger.ListStrategy.REPLACE, "Chart.yaml");
+
+        List<String> keys = new ArrayList<>(generated.keySet());
+        keys.add("c");
+        assertEquals(keys, new ArrayList<>(merged.keySet()));
+        assertEquals(4, merged.get("a"));
+    }
+}
@@ -0,0 +1,51 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class MapUtilsTest {
+
+    @Test
+    public void shouldFlattenNestedMaps() {
+        Map<String, Object> map = Map.of(
+                "app", Map.of("image", "app:1.0", "ports", Map.of("http", 8080), "empty", Collections.emptyMap()),
+                "other", Map.of("flag", true),
+                "list", List.of(1, 2));
+
+        assertEquals(Map.of("app.image", "app:1.0", "app.ports.http", 8080, "other.flag", true, "list", List.of(1, 2)),
+                MapUtils.toPlainMap(map));
+    }
+
+    @Test
+    public void shouldFlattenDeeplyNestedMaps() {
+        Map<String, Object> map = Map.of("leaf", 1);
+        StringBuilder expected = new StringBuilder("leaf");
+        for (int depth = 0; depth < 20; depth++) {
+            map = Map.of("n" + depth, map, "v" + depth, depth);
+            expected.insert(0, "n" + depth + ".");
+        }
+
+        Map<String, Object> plain = MapUtils.toPlainMap(map);
+        assertEquals(21, plain.size());
+        assertEquals(1, plain.get(expected.toString()));
+        assertEquals(19, plain.get("v19"));
+        assertEquals(0, plain.get("n19.n18.n17.n16.n15.n14.n13.n12.n11.n10.n9.n8.n7.n6.n5.n4.n3.n2.n1.v0"));
+    }
+
+    @Test
+    public void shouldFlattenMapsNestedDeeperThanTheStack() {
+        Map<String, Object> map = Map.of("leaf", 1);
+        for (int depth = 0; depth < 100_000; depth++) {
+            map = Map.of("n", map);
+        }
+
+        Map<String, Object> plain = MapUtils.toPlainMap(map);
+        assertEquals(1, plain.size());
+        assertEquals("n.".repeat(100_000) + "leaf", plain.keySet().iterator().next());
+    }
+}
@@ -0,0 +1,58 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+class ParallelGzipOutputStreamTest {
+
+    private static final int BLOCK_SIZE = 1024;
+
+    @Test
+    public void shouldWriteMultiMemberGzipReadableByGzipInputStream() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int index = 0; index < 2000; index++) {
+            content.append("line ").append(index).append(": {{ .Values.app.image }}\n");
+        }
+
+        byte[] expected = content.toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream output = new ParallelGzipOutputStream(compressed, Deflater.BEST_SPEED, 4,
+                BLOCK_SIZE)) {
+            // write in chunks that don't match the block size
+            for (int offset = 0; offset < expected.length; offset += 777) {
+                output.write(expected, offset, Math.min(777, expected.length - offset));
+            }
+        }
+
+        assertArrayEquals(expected, decompress(compressed.toByteArray()));
+    }
+
+    @Test
+    public void shouldWriteEmptyGzipWhenNoContent() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelGzipOutputStream(compressed, Deflater.DEFAULT_COMPRESSION, 2, BLOCK_SIZE).close();
+
+        assertArrayEquals(new byte[0], decompress(compressed.toByteArray()));
+    }
+
+    @Test
+    public void shouldFailWithInvalidCompressionLevel() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ParallelGzipOutputStream(new ByteArrayOutputStream(), 10, 2));
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return input.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import io.quarkiverse.helm.deployment.utils.SystemPropertiesUtils.SystemProperty;
+
+class SystemPropertiesUtilsTest {
+
+    @Test
+    public void shouldParseNestedSystemProperties() {
+        List<SystemProperty> properties = SystemPropertiesUtils
+                .getSystemProperties("jdbc:postgresql://${DB_HOST:${HOST:localhost}}:${DB_PORT}/db?opts={\"a\":1}");
+
+        assertEquals(2, properties.size());
+        assertEquals("DB_HOST", properties.get(0).getName());
+        assertEquals(Optional.of("${HOST:localhost}"), properties.get(0).getDefaultValue());
+        SystemProperty nested = properties.get(0).getDefaultValueProperties().get(0);
+        assertEquals("HOST", nested.getName());
+        assertEquals(Optional.of("localhost"), nested.getDefaultValue());
+        assertEquals("DB_PORT", properties.get(1).getName());
+        assertEquals(Optional.empty(), properties.get(1).getDefaultValue());
+        assertTrue(properties.get(1).getDefaultValueProperties().isEmpty());
+    }
+
+    @Test
+    public void shouldIgnoreSystemPropertiesThatAreNotClosed() {
+        assertTrue(SystemPropertiesUtils.getSystemProperties("${NOT_CLOSED").isEmpty());
+
+        List<SystemProperty> properties = SystemPropertiesUtils.getSystemProperties("${NOT_CLOSED:${INNER:value}");
+        assertEquals(1, properties.size());
+        assertEquals("INNER", properties.get(0).getName());
+        assertEquals(Optional.of("value"), properties.get(0).getDefaultValue());
+    }
+
+    @Test
+    public void shouldParseLongValuesInLinearTime() {
+        StringBuilder value = new StringBuilder();
+        for (int index = 0; index < 20_000; index++) {
+            value.append("${P").append(index).append(":${D").append(index).append(":x}}");
+        }
+
+        assertEquals(20_000, SystemPropertiesUtils.getSystemProperties(value.toString()).size());
+    }
+}
@@ -0,0 +1,82 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.dekorate.ConfigReference;
+
+class ValuesTreeTest {
+
+    @Test
+    public void shouldBuildNestedValues() {
+        ValuesTree tree = new ValuesTree();
+        tree.put("app.image", value("app:1.0"));
+        tree.put("app.ports.http", value(8080));
+        tree.put("app.ports.https", value(8443));
+        tree.put("global", value(true));
+
+        assertEquals(Map.of("app", Map.of("image", "app:1.0", "ports", Map.of("http", 8080, "https", 8443)),
+                "global", true), tree.toMap());
+    }
+
+    @Test
+    public void shouldFallThroughToBaseValues() {
+        ValuesTree prod = new ValuesTree();
+        prod.put("app.image", value("app:1.0"));
+        prod.put("app.replicas", value(3));
+        prod.put("app.ports.http", value(8080));
+        ValuesTree dev = new ValuesTree(prod);
+        dev.put("app.replicas", value(1));
+        dev.put("app.ports.debug", value(5005));
+
+        assertEquals(Map.of("app", Map.of("image", "app:1.0", "replicas", 1, "ports", Map.of("debug", 5005, "http", 8080))),
+                dev.toMap());
+        assertEquals(Map.of("app", Map.of("image", "app:1.0", "replicas", 3, "ports", Map.of("http", 8080))), prod.toMap());
+        assertEquals("app:1.0", dev.get("app.image").value);
+        assertEquals(1, dev.get("app.replicas").value);
+        assertNull(dev.get("app.ports"));
+
+        List<String> properties = new ArrayList<>();
+        dev.forEach((property, value) -> properties.add(property + "=" + value.value));
+        assertEquals(List.of("app.image=app:1.0", "app.ports.debug=5005", "app.ports.http=8080", "app.replicas=1"),
+                properties);
+    }
+
+    @Test
+    public void shouldOnlyLookUpOwnValues() {
+        ValuesTree prod = new ValuesTree();
+        prod.put("app.envs.name", value("prod"));
+        ValuesTree dev = new ValuesTree(prod);
+
+        assertNull(dev.findBySuffix("name"));
+        assertTrue(dev.putIfAbsent("app.envs.name", value("dev")));
+        assertFalse(dev.putIfAbsent("app.envs.name", value("other")));
+        assertEquals("dev", dev.findBySuffix("name").getValue().value);
+        assertEquals("app.envs.name", prod.findBySuffix("envs.name").getProperty());
+        assertNull(prod.findBySuffix("image"));
+    }
+
+    @Test
+    public void shouldVisitValuesInPropertyNameOrder() {
+        ValuesTree tree = new ValuesTree();
+        for (String property : List.of("app.b", "app.a-b.c", "app.a.c.d", "app.a.c", "app.A")) {
+            tree.put(property, value(property));
+        }
+
+        List<String> properties = new ArrayList<>();
+        tree.forEach((property, value) -> properties.add(property));
+        assertEquals(List.of("app.A", "app.a-b.c", "app.a.c", "app.a.c.d", "app.b"), properties);
+    }
+
+    private static ValuesHolder.HelmValueHolder value(Object value) {
+        return new ValuesHolder.HelmValueHolder(value, new ConfigReference.Builder("property", new String[0]).build());
+    }
+}
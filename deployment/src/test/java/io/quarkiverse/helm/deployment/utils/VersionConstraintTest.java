@@ -0,0 +1,49 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+class VersionConstraintTest {
+
+    private static final List<String> VERSIONS = List.of("0.2.3", "0.2.9", "0.3.0", "1.1.0", "1.2.0", "1.2.5",
+            "1.3.0-rc.1", "1.3.0", "2.0.0", "2.1.0");
+
+    @Test
+    public void shouldResolveHighestMatchingVersion() {
+        assertEquals(Optional.of("1.2.5"), highest("1.2.5"));
+        assertEquals(Optional.of("1.2.5"), highest("~1.2"));
+        assertEquals(Optional.of("1.3.0"), highest("^1.1.0"));
+        assertEquals(Optional.of("0.2.9"), highest("^0.2.3"));
+        assertEquals(Optional.of("1.3.0"), highest(">= 1.2, < 2"));
+        assertEquals(Optional.of("1.2.5"), highest("1.2.x"));
+        assertEquals(Optional.of("2.1.0"), highest("*"));
+        assertEquals(Optional.of("2.1.0"), highest("1.1 - 1.2 || >=2"));
+        assertEquals(Optional.of("1.2.5"), highest("1.1 - 1.2"));
+        assertEquals(Optional.empty(), highest("3.x"));
+    }
+
+    @Test
+    public void shouldOnlyMatchPreReleasesWithPreReleaseConstraints() {
+        assertFalse(VersionConstraint.parse(">=1.2").matches("1.3.0-rc.1"));
+        assertTrue(VersionConstraint.parse(">=1.3.0-rc.0").matches("1.3.0-rc.1"));
+        assertTrue(VersionConstraint.compare("1.3.0-rc.2", "1.3.0-rc.10") < 0);
+        assertTrue(VersionConstraint.compare("1.3.0-rc.10", "1.3.0") < 0);
+    }
+
+    @Test
+    public void shouldDetectExactVersions() {
+        assertEquals(Optional.of("1.2.3"), VersionConstraint.parse("1.2.3").exactVersion());
+        assertEquals(Optional.empty(), VersionConstraint.parse("1.2").exactVersion());
+        assertEquals(Optional.empty(), VersionConstraint.parse("^1.2.3").exactVersion());
+    }
+
+    private static Optional<String> highest(String constraint) {
+        return VersionConstraint.parse(constraint).highest(VERSIONS);
+    }
+}
@@ -0,0 +1,126 @@
+package io.quarkiverse.helm.deployment.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.yamlpath.YamlExpressionParser;
+import io.github.yamlpath.YamlPath;
+
+class YamlPathExpressionTest {
+
+    private static final String RESOURCES = """
+            kind: Deployment
+            metadata:
+              name: app
+            spec:
+              replicas: 1
+              paused: false
+            ---
+            kind: Service
+            metadata:
+              name: app
+            spec:
+              ports:
+                - port: 8080
+            ---
+            kind: Service
+            metadata:
+              name: other
+            spec:
+              ports:
+                - port: 9090
+            """;
+
+    private static final List<String> PATHS = List.of(
+            "(kind == Deployment).spec.replicas",
+            "(kind == Service && metadata.name == app).spec.ports.port",
+            "(kind == Service && metadata.name == other).spec.ports.port",
+            "(kind == Service && metadata.name == missing).spec.ports.port",
+            "(kind == Deployment && spec.replicas == 1).metadata.name",
+            "(kind == Deployment && spec.paused == false).metadata.name",
+            "(kind == Deployment && spec.missing.value == 1).metadata.name",
+            "(kind != Deployment).metadata.name",
+            "(kind == Service || kind == Deployment).metadata.name",
+            "spec.replicas");
+
+    @Test
+    void shouldCompileExpressions() {
+        assertTrue(YamlPathExpression.compile("(kind == Deployment && metadata.name == app).spec").hasFilter());
+        assertFalse(YamlPathExpression.compile("(kind != Deployment).spec").hasFilter());
+        assertFalse(YamlPathExpression.compile("(kind == Deployment)").hasFilter());
+        assertFalse(YamlPathExpression.compile("spec.replicas").hasFilter());
+    }
+
+    @Test
+    void shouldReadTheSameAsTheLibrary() {
+        for (String path : PATHS) {
+            assertEquals(parse().read(path), new IndexedYamlExpressionParser(parse().getResources()).read(path),
+                    "Unexpected result for: " + path);
+        }
+    }
+
+    @Test
+    void shouldShareCompiledExpressionsBetweenParsers() {
+        Map<String, YamlPathExpression> expressions = new HashMap<>();
+        String path = "(kind == Deployment).spec.replicas";
+        new IndexedYamlExpressionParser(parse().getResources(), expressions).read(path);
+        YamlPathExpression compiled = expressions.get(path);
+
+        assertEquals(Set.of(1), new IndexedYamlExpressionParser(parse().getResources(), expressions).read(path));
+        assertSame(compiled, expressions.get(path));
+        assertEquals(Set.of(path), expressions.keySet());
+    }
+
+    @Test
+    void shouldFindResourcesRenamedByPreviousWrites() {
+        YamlExpressionParser parser = new IndexedYamlExpressionParser(parse().getResources());
+        assertEquals(Set.of(1), parser.read("(kind == Deployment && metadata.name == app).spec.replicas"));
+
+        parser.write("(kind == Deployment).metadata.name", "renamed");
+        parser.write("(kind == Deployment && metadata.name == renamed).spec.replicas", 3);
+
+        assertEquals(Set.of(), parser.read("(kind == Deployment && metadata.name == app).spec.replicas"));
+        assertEquals(Set.of(3), parser.read("(kind == Deployment && metadata.name == renamed).spec.replicas"));
+        assertEquals(Set.of(8080), parser.read("(kind == Service && metadata.name == app).spec.ports.port"));
+    }
+
+    @Test
+    void shouldTellWhetherWritesMayChangeAField() {
+        assertTrue(YamlPathExpression.compile("(kind == Deployment).metadata.name").mayWrite("metadata.name"));
+        assertTrue(YamlPathExpression.compile("(kind == Deployment).metadata").mayWrite("metadata.name"));
+        assertTrue(YamlPathExpression.compile("(kind != Deployment).spec").mayWrite("metadata.name"));
+        assertFalse(YamlPathExpression.compile("(kind == Deployment).metadata.labels").mayWrite("metadata.name"));
+        assertFalse(YamlPathExpression.compile("(kind == Deployment).spec.replicas").mayWrite("kind"));
+    }
+
+    @Test
+    void shouldOnlyKeepTheResourcesThatMightMatch() {
+        List<Map<Object, Object>> resources = parse().getResources();
+
+        assertEquals(1, YamlPathExpression.compile("(kind == Deployment).spec").filter(resources).size());
+        assertEquals(2, YamlPathExpression.compile("(kind == Service).spec").filter(resources).size());
+        assertEquals(0, YamlPathExpression.compile("(metadata.name == none).spec").filter(resources).size());
+        assertSame(resources,
+                YamlPathExpression.compile("(kind == Service || kind == Deployment).spec").filter(resources));
+    }
+
+    private static YamlExpressionParser parse() {
+        try {
+            return YamlPath.from(new ByteArrayInputStream(RESOURCES.getBytes()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}